@@ -0,0 +1,118 @@
+package com.scytl.hibernate;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class BatchReport implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final List<Chunk> chunks = new ArrayList<>();
+    private long committedRows;
+    private Throwable failure;
+
+    void add(Chunk chunk) {
+        chunks.add(chunk);
+    }
+
+    void commit() {
+        committedRows = getRows();
+    }
+
+    void merge(BatchReport other) {
+        chunks.addAll(other.chunks);
+        committedRows += other.committedRows;
+        failure = other.failure;
+    }
+
+    void fail(Throwable failure) {
+        this.failure = failure;
+    }
+
+    public boolean isFailed() {
+        return failure != null;
+    }
+
+    public Throwable getFailure() {
+        return failure;
+    }
+
+    public List<Chunk> getChunks() {
+        return Collections.unmodifiableList(chunks);
+    }
+
+    public long getRows() {
+        long rows = 0;
+        for (Chunk chunk : chunks) {
+            rows += chunk.getRows();
+        }
+        return rows;
+    }
+
+    public long getCommittedRows() {
+        return committedRows;
+    }
+
+    public long getElapsedNanos() {
+        long elapsedNanos = 0;
+        for (Chunk chunk : chunks) {
+            elapsedNanos += chunk.getElapsedNanos();
+        }
+        return elapsedNanos;
+    }
+
+    public double getRowsPerSecond() {
+        return rowsPerSecond(getRows(), getElapsedNanos());
+    }
+
+    private static double rowsPerSecond(long rows, long elapsedNanos) {
+        return elapsedNanos == 0 ? 0 : rows * (double) TimeUnit.SECONDS.toNanos(1) / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchReport [chunks=" + chunks.size() + ", rows=" + getRows()
+            + ", committedRows=" + committedRows + ", rowsPerSecond="
+            + getRowsPerSecond() + "]";
+    }
+
+    public static class Chunk implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final int index;
+        private final int rows;
+        private final long elapsedNanos;
+
+        Chunk(int index, int rows, long elapsedNanos) {
+            this.index = index;
+            this.rows = rows;
+            this.elapsedNanos = elapsedNanos;
+        }
+
+        public int getIndex() {
+            return index;
+        }
+
+        public int getRows() {
+            return rows;
+        }
+
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        public double getRowsPerSecond() {
+            return rowsPerSecond(rows, elapsedNanos);
+        }
+
+        @Override
+        public String toString() {
+            return "Chunk [index=" + index + ", rows=" + rows
+                + ", elapsedNanos=" + elapsedNanos + "]";
+        }
+    }
+}
@@ -0,0 +1,18 @@
+package com.scytl.hibernate;
+
+public class BatchWriteException extends Exception {
+
+    private static final long serialVersionUID = 1L;
+
+    private final BatchReport report;
+
+    public BatchWriteException(BatchReport report, Throwable cause) {
+        super("Batch write failed after " + report.getCommittedRows()
+            + " committed rows", cause);
+        this.report = report;
+    }
+
+    public BatchReport getReport() {
+        return report;
+    }
+}
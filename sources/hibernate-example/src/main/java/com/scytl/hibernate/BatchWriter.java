@@ -0,0 +1,76 @@
+package com.scytl.hibernate;
+
+import java.util.Iterator;
+import java.util.stream.Stream;
+
+import javax.persistence.EntityManager;
+import javax.transaction.Status;
+import javax.transaction.SystemException;
+import javax.transaction.UserTransaction;
+
+public class BatchWriter {
+
+    private final EntityManager entityManager;
+    private final UserTransaction transaction;
+    private final int chunkSize;
+    private final CommitPolicy commitPolicy;
+
+    public BatchWriter(EntityManager entityManager, UserTransaction transaction,
+            int chunkSize, CommitPolicy commitPolicy) {
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive but was " + chunkSize);
+        }
+        this.entityManager = entityManager;
+        this.transaction = transaction;
+        this.chunkSize = chunkSize;
+        this.commitPolicy = commitPolicy;
+    }
+
+    public BatchReport write(Stream<?> entities) throws BatchWriteException {
+        return write(entities.iterator());
+    }
+
+    // tag::chunk[]
+    public BatchReport write(Iterator<?> entities) throws BatchWriteException {
+        BatchReport report = new BatchReport();
+        try {
+            transaction.begin();
+            while (entities.hasNext()) {
+                long start = System.nanoTime();
+                int rows = 0;
+                while (rows < chunkSize && entities.hasNext()) { //<1>
+                    entityManager.persist(entities.next());
+                    rows++;
+                }
+                boolean committed = commitPolicy.endChunk(entityManager, transaction); //<2>
+                report.add(new BatchReport.Chunk(report.getChunks().size(), rows,
+                    System.nanoTime() - start));
+                if (committed) {
+                    report.commit(); //<3>
+                }
+            }
+            transaction.commit();
+            report.commit();
+            return report;
+        } catch (Exception e) {
+            rollback(transaction, e);
+            entityManager.clear();
+            throw new BatchWriteException(report, e);
+        }
+    }
+    // end::chunk[]
+
+    /**
+     * Rolls back the active transaction, if any. A failure to roll back is added to the
+     * failure of the chunk, so the cause of the batch failure is not lost.
+     */
+    static void rollback(UserTransaction transaction, Exception failure) {
+        try {
+            if (transaction.getStatus() != Status.STATUS_NO_TRANSACTION) {
+                transaction.rollback();
+            }
+        } catch (SystemException | RuntimeException e) {
+            failure.addSuppressed(e);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.scytl.hibernate;
+
+import javax.persistence.EntityManager;
+import javax.transaction.UserTransaction;
+
+// tag::policy[]
+public enum CommitPolicy {
+
+    FLUSH_AND_CLEAR {
+        @Override
+        boolean endChunk(EntityManager entityManager, UserTransaction transaction) {
+            entityManager.flush(); //<1>
+            entityManager.clear();
+            return false;
+        }
+    },
+    COMMIT {
+        @Override
+        boolean endChunk(EntityManager entityManager, UserTransaction transaction)
+                throws Exception {
+            transaction.commit(); //<2>
+            entityManager.clear();
+            transaction.begin();
+            return true;
+        }
+    };
+
+    abstract boolean endChunk(EntityManager entityManager, UserTransaction transaction)
+        throws Exception;
+}
+// end::policy[]
@@ -0,0 +1,33 @@
+package com.scytl.hibernate;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Function;
+
+import javax.persistence.EntityManager;
+import javax.persistence.TypedQuery;
+
+// tag::compiled[]
+public class CompiledQueries<K, T> {
+
+    private final ConcurrentMap<K, String> queries = new ConcurrentHashMap<>();
+    private final Class<T> resultClass;
+    private final Function<K, String> definition;
+
+    public CompiledQueries(Class<T> resultClass, Function<K, String> definition) {
+        this.resultClass = resultClass;
+        this.definition = definition;
+    }
+
+    public TypedQuery<T> createQuery(EntityManager entityManager, K shape) {
+        String query = queries.computeIfAbsent(shape, definition); //<1>
+        return entityManager.createQuery(query, resultClass); //<2>
+    }
+    // end::compiled[]
+
+    int size() {
+        return queries.size();
+    }
+// tag::compiled[]
+}
+// end::compiled[]
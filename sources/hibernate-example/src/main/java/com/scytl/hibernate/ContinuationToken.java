@@ -0,0 +1,61 @@
+package com.scytl.hibernate;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Opaque key of the last row of a page: ordering it was issued for, identifier and, when
+ * ordering by it, title. It is only encoded, not signed, so any well-formed key is accepted.
+ */
+final class ContinuationToken {
+
+    enum Ordering {
+        ID, TITLE
+    }
+
+    private static final char SEPARATOR = ':';
+
+    private final long lastId;
+    private final String lastTitle;
+
+    private ContinuationToken(long lastId, String lastTitle) {
+        this.lastId = lastId;
+        this.lastTitle = lastTitle;
+    }
+
+    static ContinuationToken first() {
+        return new ContinuationToken(0, "");
+    }
+
+    static String encode(Ordering ordering, long lastId, String lastTitle) {
+        String key = ordering.name() + SEPARATOR + lastId + SEPARATOR + lastTitle;
+        return Base64.getUrlEncoder().encodeToString(key.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static ContinuationToken decode(String token, Ordering ordering) {
+        if (token == null) {
+            return first();
+        }
+        try {
+            String key = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            String prefix = ordering.name() + SEPARATOR;
+            int separator = key.indexOf(SEPARATOR, prefix.length());
+            if (!key.startsWith(prefix) || separator <= prefix.length()) {
+                throw new IllegalArgumentException("Invalid continuation token " + token
+                    + " for ordering by " + ordering);
+            }
+            return new ContinuationToken(Long.parseLong(key.substring(prefix.length(), separator)),
+                key.substring(separator + 1));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Invalid continuation token " + token, e);
+        }
+    }
+
+    long getLastId() {
+        return lastId;
+    }
+
+    String getLastTitle() {
+        return lastTitle;
+    }
+}
@@ -0,0 +1,136 @@
+package com.scytl.hibernate;
+
+import java.io.BufferedReader;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Serializable;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+
+public class FileSegment implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private final String file;
+    private final long start;
+    private final long end;
+
+    public FileSegment(Path file, long start, long end) {
+        this.file = file.toString();
+        this.start = start;
+        this.end = end;
+    }
+
+    public static FileSegment whole(Path file) {
+        return new FileSegment(file, 0, Long.MAX_VALUE);
+    }
+
+    // tag::split[]
+    public static List<FileSegment> split(Path file, int segments) throws IOException {
+        List<FileSegment> result = new ArrayList<>();
+        long size = Files.size(file);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            long start = 0;
+            for (int i = 1; i <= segments && start < size; i++) {
+                long end = i == segments
+                    ? size : nextLine(channel, Math.max(0, size * i / segments - 1)); //<1>
+                if (end > start) {
+                    result.add(new FileSegment(file, start, end));
+                    start = end;
+                }
+            }
+        }
+        return result;
+    }
+    // end::split[]
+
+    private static long nextLine(FileChannel channel, long position) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(4096);
+        long size = channel.size();
+        while (position < size) {
+            buffer.clear();
+            int read = channel.read(buffer, position);
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return position + i + 1;
+                }
+            }
+            position += read;
+        }
+        return size;
+    }
+
+    public Stream<String> lines() throws IOException {
+        FileChannel channel = FileChannel.open(Paths.get(file), StandardOpenOption.READ);
+        channel.position(start);
+        BufferedReader reader = new BufferedReader(new InputStreamReader(
+            new SegmentInputStream(Channels.newInputStream(channel), end - start),
+            StandardCharsets.UTF_8));
+        return reader.lines().onClose(() -> {
+            try {
+                reader.close();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    public long getStart() {
+        return start;
+    }
+
+    public long getEnd() {
+        return end;
+    }
+
+    @Override
+    public String toString() {
+        return "FileSegment [file=" + file + ", start=" + start + ", end=" + end + "]";
+    }
+
+    private static class SegmentInputStream extends FilterInputStream {
+
+        private long remaining;
+
+        SegmentInputStream(InputStream in, long length) {
+            super(in);
+            this.remaining = length;
+        }
+
+        @Override
+        public int read() throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = super.read();
+            if (read != -1) {
+                remaining--;
+            }
+            return read;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            if (remaining <= 0) {
+                return -1;
+            }
+            int read = super.read(buffer, offset, (int) Math.min(length, remaining));
+            if (read != -1) {
+                remaining -= read;
+            }
+            return read;
+        }
+    }
+}
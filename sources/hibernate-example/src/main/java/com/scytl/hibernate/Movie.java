@@ -5,16 +5,28 @@ import java.util.List;
 
 import javax.persistence.CascadeType;
 import javax.persistence.Entity;
+import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
+import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.NamedQueries;
 import javax.persistence.NamedQuery;
 import javax.persistence.OneToMany;
 import javax.persistence.OneToOne;
+import javax.persistence.SequenceGenerator;
 import javax.persistence.Version;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 
+import org.hibernate.annotations.Index;
+import org.hibernate.annotations.LazyToOne;
+import org.hibernate.annotations.LazyToOneOption;
+import org.hibernate.annotations.Table;
+
+// tag::keyset[]
+@Table(appliesTo = "Movie",
+       indexes = @Index(name = "movie_title_id", columnNames = {"title", "id"})) //<1>
+// end::keyset[]
 // tag::jpql[]
 @Entity
 @NamedQueries({
@@ -24,8 +36,12 @@ import javax.validation.constraints.NotNull;
 })
 public class Movie {
 // end::jpql[]
-    @Id @GeneratedValue
+    // tag::sequence[]
+    @Id
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "movie_seq") //<1>
+    @SequenceGenerator(name = "movie_seq", sequenceName = "movie_seq", allocationSize = 50) //<2>
     private long id;
+    // end::sequence[]
 
     @NotNull
     private String title;
@@ -40,7 +56,13 @@ public class Movie {
     // end::version[]
     
     // tag::onetoone[]
-    @OneToOne(mappedBy = "movie", cascade = CascadeType.ALL, orphanRemoval = true) //<1>
+    @OneToOne(mappedBy = "movie", cascade = CascadeType.ALL, orphanRemoval = true, //<1>
+              fetch = FetchType.LAZY)
+    // end::onetoone[]
+    // tag::instrument[]
+    @LazyToOne(LazyToOneOption.NO_PROXY) //<1>
+    // end::instrument[]
+    // tag::onetoone[]
     private MovieDetail movieDetail;
 
     public MovieDetail getMovieDetail() {
@@ -7,10 +7,15 @@ import javax.persistence.Id;
 import javax.persistence.OneToOne;
 import javax.persistence.PrimaryKeyJoinColumn;
 
+import org.hibernate.annotations.GenericGenerator;
+
 @Entity
 public class MovieDetail {
 
-    @Id @GeneratedValue
+    @Id
+    @GeneratedValue(generator = "movie_detail_fk")
+    @GenericGenerator(name = "movie_detail_fk",
+                      strategy = "com.scytl.hibernate.MovieDetailIdGenerator")
     private long id;
 
     @OneToOne //<1>
@@ -0,0 +1,22 @@
+package com.scytl.hibernate;
+
+import java.io.Serializable;
+
+import org.hibernate.engine.spi.SessionImplementor;
+import org.hibernate.id.IdentifierGenerationException;
+import org.hibernate.id.IdentifierGenerator;
+
+// tag::sharedid[]
+public class MovieDetailIdGenerator implements IdentifierGenerator {
+
+    @Override
+    public Serializable generate(SessionImplementor session, Object object) {
+        Movie movie = ((MovieDetail) object).getMovie();
+        if (movie == null || movie.getId() == 0) {
+            throw new IdentifierGenerationException(
+                "MovieDetail must be saved after its Movie");
+        }
+        return movie.getId(); //<1>
+    }
+}
+// end::sharedid[]
@@ -0,0 +1,93 @@
+package com.scytl.hibernate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * One line of a movies CSV file:
+ * {@code title,releasedYear,directedBy,producedBy[,review]*}.
+ * Fields may be enclosed in double quotes, and a quote inside a quoted
+ * field is escaped by doubling it.
+ */
+public class MovieRecord {
+
+    private final Movie movie;
+    private final MovieDetail movieDetail;
+    private final List<Comment> comments;
+
+    MovieRecord(Movie movie, MovieDetail movieDetail, List<Comment> comments) {
+        this.movie = movie;
+        this.movieDetail = movieDetail;
+        this.comments = Collections.unmodifiableList(comments);
+    }
+
+    public static MovieRecord parse(String line) {
+        List<String> fields = split(line);
+        if (fields.size() < 4) {
+            throw new IllegalArgumentException("Expected at least 4 fields but was "
+                + fields.size() + ": " + line);
+        }
+
+        Movie movie = new Movie();
+        movie.setTitle(fields.get(0));
+        movie.setReleasedYear(Integer.parseInt(fields.get(1).trim()));
+
+        MovieDetail movieDetail = null;
+        if (!fields.get(2).isEmpty() || !fields.get(3).isEmpty()) {
+            movieDetail = new MovieDetail();
+            movieDetail.setDirectedBy(fields.get(2));
+            movieDetail.setProducedBy(fields.get(3));
+            movie.setMovieDetail(movieDetail);
+        }
+
+        List<Comment> comments = new ArrayList<>();
+        for (String review : fields.subList(4, fields.size())) {
+            Comment comment = new Comment();
+            comment.setReview(review);
+            comment.setMovie(movie);
+            comments.add(comment);
+        }
+        return new MovieRecord(movie, movieDetail, comments);
+    }
+
+    static List<String> split(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') {
+                    field.append(c);
+                } else if (i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append(c);
+                    i++;
+                } else {
+                    quoted = false;
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+
+    public Movie getMovie() {
+        return movie;
+    }
+
+    public MovieDetail getMovieDetail() {
+        return movieDetail;
+    }
+
+    public List<Comment> getComments() {
+        return comments;
+    }
+}
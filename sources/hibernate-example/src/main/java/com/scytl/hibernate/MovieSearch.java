@@ -0,0 +1,72 @@
+package com.scytl.hibernate;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.Set;
+
+public class MovieSearch {
+
+    public enum Filter {
+        TITLE, FROM_YEAR, TO_YEAR, DIRECTED_BY
+    }
+
+    private String title;
+    private Integer fromYear;
+    private Integer toYear;
+    private String directedBy;
+
+    public MovieSearch title(String title) {
+        this.title = title;
+        return this;
+    }
+
+    public MovieSearch releasedBetween(Integer fromYear, Integer toYear) {
+        this.fromYear = fromYear;
+        this.toYear = toYear;
+        return this;
+    }
+
+    public MovieSearch directedBy(String directedBy) {
+        this.directedBy = directedBy;
+        return this;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public Integer getFromYear() {
+        return fromYear;
+    }
+
+    public Integer getToYear() {
+        return toYear;
+    }
+
+    public String getDirectedBy() {
+        return directedBy;
+    }
+
+    public Set<Filter> shape() {
+        Set<Filter> shape = EnumSet.noneOf(Filter.class);
+        if (title != null) {
+            shape.add(Filter.TITLE);
+        }
+        if (fromYear != null) {
+            shape.add(Filter.FROM_YEAR);
+        }
+        if (toYear != null) {
+            shape.add(Filter.TO_YEAR);
+        }
+        if (directedBy != null) {
+            shape.add(Filter.DIRECTED_BY);
+        }
+        return Collections.unmodifiableSet(shape);
+    }
+
+    @Override
+    public String toString() {
+        return "MovieSearch [title=" + title + ", fromYear=" + fromYear
+            + ", toYear=" + toYear + ", directedBy=" + directedBy + "]";
+    }
+}
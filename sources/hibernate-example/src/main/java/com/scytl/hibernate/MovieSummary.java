@@ -0,0 +1,77 @@
+// tag::projection[]
+package com.scytl.hibernate;
+
+public class MovieSummary {
+
+    private final long id;
+    private final String title;
+    private final int releasedYear;
+    private final String directedBy;
+    private final long comments;
+
+    public MovieSummary(long id, String title, int releasedYear,
+            String directedBy, long comments) { //<1>
+        this.id = id;
+        this.title = title;
+        this.releasedYear = releasedYear;
+        this.directedBy = directedBy;
+        this.comments = comments;
+    }
+
+    public long getId() {
+        return id;
+    }
+    public String getTitle() {
+        return title;
+    }
+    public int getReleasedYear() {
+        return releasedYear;
+    }
+    public String getDirectedBy() {
+        return directedBy;
+    }
+    public long getComments() {
+        return comments;
+    }
+// end::projection[]
+
+    @Override
+    public int hashCode() {
+        final int prime = 31;
+        int result = 1;
+        result = prime * result + (int) (id ^ (id >>> 32));
+        result = prime * result + releasedYear;
+        result = prime * result + ((title == null) ? 0 : title.hashCode());
+        return result;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (this == obj)
+            return true;
+        if (obj == null)
+            return false;
+        if (getClass() != obj.getClass())
+            return false;
+        MovieSummary other = (MovieSummary) obj;
+        if (id != other.id)
+            return false;
+        if (releasedYear != other.releasedYear)
+            return false;
+        if (title == null) {
+            if (other.title != null)
+                return false;
+        } else if (!title.equals(other.title))
+            return false;
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return "MovieSummary [id=" + id + ", title=" + title
+            + ", releasedYear=" + releasedYear + ", directedBy="
+            + directedBy + ", comments=" + comments + "]";
+    }
+// tag::projection[]
+}
+// end::projection[]
@@ -1,6 +1,14 @@
 package com.scytl.hibernate;
 
+import java.nio.file.Path;
+import java.util.Iterator;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
 import javax.annotation.Resource;
+import javax.ejb.AsyncResult;
+import javax.ejb.Asynchronous;
 import javax.ejb.Stateless;
 import javax.ejb.TransactionManagement;
 import javax.ejb.TransactionManagementType;
@@ -8,11 +16,17 @@ import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
 import javax.transaction.UserTransaction;
 
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.StatelessSession;
+
 // tag::simplebatch[]
 @Stateless
 @TransactionManagement(TransactionManagementType.BEAN)
 public class MoviesBatchService {
 
+    static final int CHUNK_SIZE = 50; //<1>
+
     @PersistenceContext
     EntityManager entityManager;
 
@@ -21,38 +35,93 @@ public class MoviesBatchService {
 
 // end::simplebatch[]
 // tag::multipletx[]
-    public void createMoviesInSeveralTransactions() throws Exception {
-        transaction.begin();
-        for(int i=1;i<10000;i++) {
-            Movie movie = new Movie();
-            movie.setTitle(Integer.toString(i));
-            movie.setReleasedYear(1901);
-            entityManager.persist(movie);
-            if ((i % 10000) == 0) {
-                transaction.commit(); //<1>
-                entityManager.clear();
+    public BatchReport createMoviesInSeveralTransactions() throws BatchWriteException {
+        return createMovies(movies(9999), CHUNK_SIZE, CommitPolicy.COMMIT); //<1>
+    }
+// end::multipletx[]
+
+ // tag::simplebatch[]
+    public BatchReport createMoviesInBatch() throws BatchWriteException {
+        return createMovies(movies(9999), CHUNK_SIZE, CommitPolicy.FLUSH_AND_CLEAR); //<2>
+    }
+
+    public BatchReport createMovies(Iterator<Movie> movies, int chunkSize,
+            CommitPolicy commitPolicy) throws BatchWriteException {
+        return new BatchWriter(entityManager, transaction, chunkSize, commitPolicy)
+            .write(movies); //<3>
+    }
+// end::simplebatch[]
+
+    public BatchReport importMovies(Path file, int chunkSize) throws BatchWriteException {
+        return importMovies(FileSegment.whole(file), 0, chunkSize);
+    }
+
+    // tag::asyncimport[]
+    @Asynchronous
+    public Future<BatchReport> importSegment(FileSegment segment, long skip, int chunkSize) {
+        try {
+            return new AsyncResult<>(importMovies(segment, skip, chunkSize));
+        } catch (BatchWriteException e) {
+            BatchReport report = e.getReport();
+            report.fail(e.getCause()); //<1>
+            return new AsyncResult<>(report);
+        }
+    }
+    // end::asyncimport[]
+
+    // tag::statelessimport[]
+    public BatchReport importMovies(FileSegment segment, long skip, int chunkSize)
+            throws BatchWriteException {
+        BatchReport report = new BatchReport();
+        SessionFactory sessionFactory =
+            entityManager.unwrap(Session.class).getSessionFactory();
+        try (Stream<String> lines = segment.lines()) { //<1>
+            Iterator<String> records = lines.skip(skip).iterator();
+            while (records.hasNext()) {
+                long start = System.nanoTime();
+                int rows = 0;
                 transaction.begin();
+                StatelessSession session = sessionFactory.openStatelessSession(); //<2>
+                try {
+                    while (rows < chunkSize && records.hasNext()) {
+                        insert(session, MovieRecord.parse(records.next()));
+                        rows++;
+                    }
+                    transaction.commit(); //<3>
+                } finally {
+                    session.close();
+                }
+                report.add(new BatchReport.Chunk(report.getChunks().size(), rows,
+                    System.nanoTime() - start));
+                report.commit();
             }
+            return report;
+        } catch (Exception e) {
+            BatchWriter.rollback(transaction, e);
+            throw new BatchWriteException(report, e);
         }
-        transaction.commit();
     }
-// end::multipletx[]
 
- // tag::simplebatch[]
-    public void createMoviesInBatch() throws Exception {
-       transaction.begin();
-       for(int i=1;i<10000;i++) {
-           Movie movie = new Movie();
-           movie.setTitle(Integer.toString(i));
-           movie.setReleasedYear(1901);
-           entityManager.persist(movie);
-           if ((i % 10000) == 0) {
-               entityManager.flush(); //<1>
-               entityManager.clear();
-           }
-       }
-       transaction.commit();
+    private static void insert(StatelessSession session, MovieRecord record) {
+        session.insert(record.getMovie()); //<4>
+        if (record.getMovieDetail() != null) {
+            session.insert(record.getMovieDetail());
+        }
+        for (Comment comment : record.getComments()) {
+            session.insert(comment);
+        }
     }
+    // end::statelessimport[]
 
+    private static Iterator<Movie> movies(int count) {
+        Stream<Movie> movies = IntStream.rangeClosed(1, count).mapToObj(i -> {
+            Movie movie = new Movie();
+            movie.setTitle(Integer.toString(i));
+            movie.setReleasedYear(1901);
+            return movie;
+        });
+        return movies.iterator();
+    }
+// tag::simplebatch[]
 }
-// end::simplebatch[]
\ No newline at end of file
+// end::simplebatch[]
@@ -1,20 +1,35 @@
 package com.scytl.hibernate;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
 
 import javax.ejb.Stateless;
 import javax.persistence.EntityManager;
+import javax.persistence.EntityNotFoundException;
 import javax.persistence.PersistenceContext;
 import javax.persistence.TypedQuery;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Join;
+import javax.persistence.criteria.JoinType;
+import javax.persistence.criteria.ListJoin;
 import javax.persistence.criteria.ParameterExpression;
 import javax.persistence.criteria.Root;
 
+import com.scytl.hibernate.ContinuationToken.Ordering;
+import com.scytl.hibernate.MovieSearch.Filter;
+
 // tag::jpql[]
 @Stateless
 public class MoviesService {
 
+    // end::jpql[]
+    private static final CompiledQueries<Set<Filter>, Movie> SEARCHES =
+        new CompiledQueries<>(Movie.class, MoviesService::searchDefinition);
+
+    // tag::jpql[]
     @PersistenceContext
     EntityManager entityManager;
 
@@ -37,10 +52,36 @@ public class MoviesService {
     }
 
     // end::jpql[]
+    // tag::projection[]
+    public List<MovieSummary> findMovieSummariesByTitle(String title) {
+        TypedQuery<MovieSummary> findSummariesQuery = entityManager.createQuery(
+            "SELECT NEW com.scytl.hibernate.MovieSummary(" //<1>
+                + "m.id, m.title, m.releasedYear, d.directedBy, COUNT(c)) "
+                + "FROM Movie m LEFT JOIN m.movieDetail d LEFT JOIN m.comments c "
+                + "WHERE m.title = :title "
+                + "GROUP BY m.id, m.title, m.releasedYear, d.directedBy", MovieSummary.class);
+        findSummariesQuery.setParameter("title", title);
+
+        return findSummariesQuery.getResultList(); //<2>
+    }
+
+    // end::projection[]
     public Movie findMovieById(long id) {
         return entityManager.find(Movie.class, id);
     }
 
+    // tag::update[]
+    public Movie updateMovie(long id, Consumer<Movie> change) {
+        Movie movie = entityManager.find(Movie.class, id); //<1>
+        if (movie == null) {
+            throw new EntityNotFoundException("No movie with id " + id);
+        }
+        change.accept(movie);
+        entityManager.flush(); //<2>
+        return movie;
+    }
+    // end::update[]
+
     // tag::metamodel[]
     public List<Movie> findMoviesByTitleCriteriaMetamodel(String title) {
         CriteriaBuilder cb = entityManager.getCriteriaBuilder();
@@ -53,6 +94,26 @@ public class MoviesService {
         return findMoviesQuery.getResultList();
     }
     // end::metamodel[]
+
+    // tag::metamodelprojection[]
+    public List<MovieSummary> findMovieSummariesByTitleCriteriaMetamodel(String title) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<MovieSummary> query = cb.createQuery(MovieSummary.class);
+
+        Root<Movie> movie = query.from(Movie.class);
+        Join<Movie, MovieDetail> detail = movie.join(Movie_.movieDetail, JoinType.LEFT);
+        ListJoin<Movie, Comment> comments = movie.join(Movie_.comments, JoinType.LEFT);
+        query.select(cb.construct(MovieSummary.class, //<1>
+                movie.get(Movie_.id), movie.get(Movie_.title),
+                movie.get(Movie_.releasedYear), detail.get(MovieDetail_.directedBy),
+                cb.count(comments)))
+            .where(cb.equal(movie.get(Movie_.title), title))
+            .groupBy(movie.get(Movie_.id), movie.get(Movie_.title),
+                movie.get(Movie_.releasedYear), detail.get(MovieDetail_.directedBy));
+
+        return entityManager.createQuery(query).getResultList();
+    }
+    // end::metamodelprojection[]
     
     // tag::criteria[]
     public List<Movie> findMoviesByTitleCriteria(String title) {
@@ -69,8 +130,100 @@ public class MoviesService {
     }
 
     //end::criteria[]
+    // tag::search[]
+    public List<Movie> searchMovies(MovieSearch search) {
+        Set<Filter> shape = search.shape();
+        TypedQuery<Movie> searchQuery = SEARCHES.createQuery(entityManager, shape); //<1>
+        if (shape.contains(Filter.TITLE)) {
+            searchQuery.setParameter("title", search.getTitle()); //<2>
+        }
+        if (shape.contains(Filter.FROM_YEAR)) {
+            searchQuery.setParameter("fromYear", search.getFromYear());
+        }
+        if (shape.contains(Filter.TO_YEAR)) {
+            searchQuery.setParameter("toYear", search.getToYear());
+        }
+        if (shape.contains(Filter.DIRECTED_BY)) {
+            searchQuery.setParameter("directedBy", search.getDirectedBy());
+        }
+        return searchQuery.getResultList();
+    }
+
+    private static String searchDefinition(Set<Filter> shape) {
+        StringBuilder query = new StringBuilder("SELECT m FROM Movie m");
+        List<String> predicates = new ArrayList<>();
+        if (shape.contains(Filter.TITLE)) {
+            predicates.add("m." + Movie_.title.getName() + " = :title"); //<3>
+        }
+        if (shape.contains(Filter.FROM_YEAR)) {
+            predicates.add("m." + Movie_.releasedYear.getName() + " >= :fromYear");
+        }
+        if (shape.contains(Filter.TO_YEAR)) {
+            predicates.add("m." + Movie_.releasedYear.getName() + " <= :toYear");
+        }
+        if (shape.contains(Filter.DIRECTED_BY)) {
+            query.append(" JOIN m.").append(Movie_.movieDetail.getName()).append(" d");
+            predicates.add("d." + MovieDetail_.directedBy.getName() + " = :directedBy");
+        }
+        if (!predicates.isEmpty()) {
+            query.append(" WHERE ").append(String.join(" AND ", predicates)); //<4>
+        }
+        return query.append(" ORDER BY m.").append(Movie_.id.getName()).toString();
+    }
+
+    // end::search[]
+    static int compiledSearches() {
+        return SEARCHES.size();
+    }
+
     public List<Movie> findAllMovies() {
         TypedQuery<Movie> findAllMoviesQuery = entityManager.createNamedQuery("Movie.findAll", Movie.class);
         return findAllMoviesQuery.getResultList();
     }
+
+    public List<MovieSummary> findAllMovieSummaries() {
+        return entityManager.createQuery(
+            "SELECT NEW com.scytl.hibernate.MovieSummary("
+                + "m.id, m.title, m.releasedYear, d.directedBy, COUNT(c)) "
+                + "FROM Movie m LEFT JOIN m.movieDetail d LEFT JOIN m.comments c "
+                + "GROUP BY m.id, m.title, m.releasedYear, d.directedBy", MovieSummary.class)
+            .getResultList();
+    }
+
+    // tag::keyset[]
+    public Page<Movie> findMoviesAfter(String continuationToken, int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be positive but was " + pageSize);
+        }
+        ContinuationToken last =
+            ContinuationToken.decode(continuationToken, Ordering.ID); //<1>
+        List<Movie> movies = entityManager
+            .createQuery("SELECT m FROM Movie m WHERE m.id > :lastId "
+                + "ORDER BY m.id", Movie.class) //<2>
+            .setParameter("lastId", last.getLastId())
+            .setMaxResults(pageSize + 1) //<3>
+            .getResultList();
+
+        return Page.of(movies, pageSize,
+            movie -> ContinuationToken.encode(Ordering.ID, movie.getId(), ""));
+    }
+
+    // end::keyset[]
+    public Page<Movie> findMoviesOrderedByTitle(String continuationToken, int pageSize) {
+        if (pageSize < 1) {
+            throw new IllegalArgumentException("Page size must be positive but was " + pageSize);
+        }
+        ContinuationToken last = ContinuationToken.decode(continuationToken, Ordering.TITLE);
+        List<Movie> movies = entityManager
+            .createQuery("SELECT m FROM Movie m WHERE m.title >= :lastTitle "
+                + "AND (m.title > :lastTitle OR (m.title = :lastTitle AND m.id > :lastId)) "
+                + "ORDER BY m.title, m.id", Movie.class)
+            .setParameter("lastTitle", last.getLastTitle())
+            .setParameter("lastId", last.getLastId())
+            .setMaxResults(pageSize + 1)
+            .getResultList();
+
+        return Page.of(movies, pageSize,
+            movie -> ContinuationToken.encode(Ordering.TITLE, movie.getId(), movie.getTitle()));
+    }
 }
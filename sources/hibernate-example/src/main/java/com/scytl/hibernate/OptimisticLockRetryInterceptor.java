@@ -0,0 +1,112 @@
+package com.scytl.hibernate;
+
+import java.lang.management.ManagementFactory;
+import java.lang.reflect.Method;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.interceptor.AroundInvoke;
+import javax.interceptor.InvocationContext;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.persistence.OptimisticLockException;
+
+import org.hibernate.StaleStateException;
+
+// tag::interceptor[]
+public class OptimisticLockRetryInterceptor {
+
+    private static final ConcurrentMap<String, RetryMetrics> METRICS = new ConcurrentHashMap<>();
+    private static final ConcurrentMap<String, RetryBudget> BUDGETS = new ConcurrentHashMap<>();
+
+    @AroundInvoke
+    public Object retry(InvocationContext context) throws Exception {
+        RetryOnOptimisticLock retry = context.getMethod().getAnnotation(RetryOnOptimisticLock.class);
+        if (retry == null) {
+            return context.proceed();
+        }
+        String name = name(context.getMethod());
+        RetryMetrics metrics = METRICS.computeIfAbsent(name, OptimisticLockRetryInterceptor::register);
+        RetryBudget budget = BUDGETS.computeIfAbsent(name,
+            n -> new RetryBudget(retry.budgetRatio(), retry.budgetReserve()));
+
+        metrics.called();
+        budget.deposit(); //<1>
+        for (int attempt = 1;; attempt++) {
+            try {
+                Object result = context.proceed(); //<2>
+                if (attempt > 1) {
+                    metrics.recovered();
+                }
+                return result;
+            } catch (Exception e) {
+                if (!isOptimisticLockFailure(e)) {
+                    throw e;
+                }
+                boolean attemptsLeft = attempt < retry.maxAttempts();
+                if (!attemptsLeft || !budget.withdraw()) { //<3>
+                    metrics.aborted(attemptsLeft);
+                    throw e;
+                }
+                metrics.retried();
+                Thread.sleep(backoff(retry, attempt)); //<4>
+            }
+        }
+    }
+
+    static long backoff(RetryOnOptimisticLock retry, int attempt) {
+        long ceiling = Math.min(retry.maxBackoffMillis(),
+            retry.initialBackoffMillis() << Math.min(attempt - 1, 30));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1); //<5>
+    }
+    // end::interceptor[]
+
+    static boolean isOptimisticLockFailure(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof OptimisticLockException || cause instanceof StaleStateException) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String name(Method method) {
+        return method.getDeclaringClass().getSimpleName() + "." + method.getName();
+    }
+
+    private static RetryMetrics register(String method) {
+        RetryMetrics metrics = new RetryMetrics();
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(objectName(method))) {
+                server.unregisterMBean(objectName(method));
+            }
+            server.registerMBean(metrics, objectName(method));
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot register retry metrics of " + method, e);
+        }
+        return metrics;
+    }
+
+    static ObjectName objectName(String method) throws JMException {
+        return new ObjectName("com.scytl.hibernate:type=RetryMetrics,name="
+            + ObjectName.quote(method));
+    }
+
+    /**
+     * Returns the metrics of the given method, or {@code null} if it was never called.
+     */
+    public static RetryMetrics getMetrics(String method) {
+        return METRICS.get(method);
+    }
+
+    public static Map<String, RetryMetrics> getMetrics() {
+        return Collections.unmodifiableMap(METRICS);
+    }
+// tag::interceptor[]
+}
+// end::interceptor[]
@@ -0,0 +1,43 @@
+package com.scytl.hibernate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Function;
+
+public class Page<T> {
+
+    private final List<T> content;
+    private final String continuationToken;
+
+    public Page(List<T> content, String continuationToken) {
+        this.content = Collections.unmodifiableList(new ArrayList<>(content));
+        this.continuationToken = continuationToken;
+    }
+
+    static <T> Page<T> of(List<T> rows, int pageSize, Function<T, String> keyOf) {
+        if (rows.size() <= pageSize) {
+            return new Page<>(rows, null);
+        }
+        List<T> content = rows.subList(0, pageSize);
+        return new Page<>(content, keyOf.apply(content.get(pageSize - 1)));
+    }
+
+    public List<T> getContent() {
+        return content;
+    }
+
+    public String getContinuationToken() {
+        return continuationToken;
+    }
+
+    public boolean hasNext() {
+        return continuationToken != null;
+    }
+
+    @Override
+    public String toString() {
+        return "Page [content=" + content + ", continuationToken="
+            + continuationToken + "]";
+    }
+}
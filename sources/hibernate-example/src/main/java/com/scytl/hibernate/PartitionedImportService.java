@@ -0,0 +1,92 @@
+package com.scytl.hibernate;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import javax.ejb.EJB;
+import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+
+// tag::partitioned[]
+@Stateless
+@TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED) //<1>
+public class PartitionedImportService {
+
+    @EJB
+    MoviesBatchService moviesBatchService;
+
+    public List<BatchReport> importMovies(Path file, int parallelism, int chunkSize,
+            int maxAttempts) throws BatchWriteException, IOException, InterruptedException {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive but was " + parallelism);
+        }
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("Chunk size must be positive but was " + chunkSize);
+        }
+        List<Partition> partitions = new ArrayList<>();
+        Deque<Partition> running = new ArrayDeque<>();
+        for (FileSegment segment : FileSegment.split(file, parallelism)) { //<2>
+            Partition partition = new Partition(segment);
+            submit(partition, chunkSize);
+            partitions.add(partition);
+            running.add(partition);
+        }
+
+        BatchWriteException failure = null;
+        while (!running.isEmpty()) {
+            Partition partition = running.poll();
+            try {
+                partition.report.merge(partition.future.get());
+            } catch (ExecutionException e) {
+                partition.report.fail(e.getCause());
+            }
+            if (!partition.report.isFailed()) {
+                continue;
+            }
+            if (partition.attempts < maxAttempts) {
+                submit(partition, chunkSize); //<3>
+                running.add(partition);
+            } else if (failure == null) {
+                failure = new BatchWriteException(partition.report,
+                    partition.report.getFailure());
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+
+        List<BatchReport> reports = new ArrayList<>();
+        for (Partition partition : partitions) {
+            reports.add(partition.report);
+        }
+        return reports;
+    }
+
+    private void submit(Partition partition, int chunkSize) {
+        partition.attempts++;
+        partition.future = moviesBatchService.importSegment(partition.segment,
+            partition.report.getCommittedRows(), chunkSize); //<4>
+    }
+// end::partitioned[]
+
+    private static class Partition {
+
+        private final FileSegment segment;
+        private final BatchReport report = new BatchReport();
+        private int attempts;
+        private Future<BatchReport> future;
+
+        Partition(FileSegment segment) {
+            this.segment = segment;
+        }
+    }
+// tag::partitioned[]
+}
+// end::partitioned[]
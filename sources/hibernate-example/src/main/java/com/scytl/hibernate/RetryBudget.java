@@ -0,0 +1,34 @@
+package com.scytl.hibernate;
+
+/**
+ * Token bucket bounding retries to a ratio of calls, plus a reserve for bursts, so conflicts on
+ * a hot row cannot multiply the load on it.
+ */
+public class RetryBudget {
+
+    private final double ratio;
+    private final double capacity;
+    private double tokens;
+
+    public RetryBudget(double ratio, int reserve) {
+        this.ratio = ratio;
+        this.capacity = reserve;
+        this.tokens = reserve;
+    }
+
+    public synchronized void deposit() {
+        tokens = Math.min(capacity, tokens + ratio);
+    }
+
+    public synchronized boolean withdraw() {
+        if (tokens < 1) {
+            return false;
+        }
+        tokens--;
+        return true;
+    }
+
+    public synchronized double getTokens() {
+        return tokens;
+    }
+}
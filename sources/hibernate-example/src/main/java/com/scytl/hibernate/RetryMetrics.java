@@ -0,0 +1,72 @@
+package com.scytl.hibernate;
+
+import java.util.concurrent.atomic.LongAdder;
+
+public class RetryMetrics implements RetryMetricsMXBean {
+
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder retries = new LongAdder();
+    private final LongAdder recovered = new LongAdder();
+    private final LongAdder aborted = new LongAdder();
+    private final LongAdder budgetExhausted = new LongAdder();
+
+    void called() {
+        calls.increment();
+    }
+
+    void retried() {
+        retries.increment();
+    }
+
+    void recovered() {
+        recovered.increment();
+    }
+
+    void aborted(boolean outOfBudget) {
+        aborted.increment();
+        if (outOfBudget) {
+            budgetExhausted.increment();
+        }
+    }
+
+    @Override
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    @Override
+    public long getRetries() {
+        return retries.sum();
+    }
+
+    /**
+     * Returns the calls that succeeded after at least one retry.
+     */
+    @Override
+    public long getRecovered() {
+        return recovered.sum();
+    }
+
+    /**
+     * Returns the calls that failed with an optimistic lock conflict after the last attempt.
+     */
+    @Override
+    public long getAborted() {
+        return aborted.sum();
+    }
+
+    /**
+     * Returns the aborted calls that still had attempts left, but no retry budget.
+     */
+    @Override
+    public long getBudgetExhausted() {
+        return budgetExhausted.sum();
+    }
+
+    @Override
+    public String toString() {
+        return "RetryMetrics [calls=" + getCalls() + ", retries=" + getRetries()
+            + ", recovered=" + getRecovered() + ", aborted=" + getAborted()
+            + ", budgetExhausted=" + getBudgetExhausted() + "]";
+    }
+}
@@ -0,0 +1,14 @@
+package com.scytl.hibernate;
+
+public interface RetryMetricsMXBean {
+
+    long getCalls();
+
+    long getRetries();
+
+    long getRecovered();
+
+    long getAborted();
+
+    long getBudgetExhausted();
+}
@@ -0,0 +1,23 @@
+package com.scytl.hibernate;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+// tag::retry[]
+@Retention(RetentionPolicy.RUNTIME)
+@Target(ElementType.METHOD)
+public @interface RetryOnOptimisticLock {
+
+    int maxAttempts() default 5;
+
+    long initialBackoffMillis() default 10;
+
+    long maxBackoffMillis() default 500;
+
+    double budgetRatio() default 0.2; //<1>
+
+    int budgetReserve() default 10;
+}
+// end::retry[]
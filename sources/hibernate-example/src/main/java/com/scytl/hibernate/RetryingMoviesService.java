@@ -0,0 +1,32 @@
+package com.scytl.hibernate;
+
+import java.util.function.Consumer;
+
+import javax.ejb.EJB;
+import javax.ejb.Stateless;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.interceptor.Interceptors;
+
+// tag::service[]
+@Stateless
+@TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED) //<1>
+@Interceptors(OptimisticLockRetryInterceptor.class)
+public class RetryingMoviesService {
+
+    @EJB
+    MoviesService moviesService;
+
+    @RetryOnOptimisticLock
+    public Movie updateMovie(long id, Consumer<Movie> change) {
+        return moviesService.updateMovie(id, change); //<2>
+    }
+    // end::service[]
+
+    @RetryOnOptimisticLock
+    public Movie updateReleasedYear(long id, int releasedYear) {
+        return moviesService.updateMovie(id, movie -> movie.setReleasedYear(releasedYear));
+    }
+// tag::service[]
+}
+// end::service[]
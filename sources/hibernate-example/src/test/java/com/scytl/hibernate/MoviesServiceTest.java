@@ -1,23 +1,47 @@
 package com.scytl.hibernate;
 
 import static org.hamcrest.CoreMatchers.hasItem;
+import static org.hamcrest.CoreMatchers.instanceOf;
+import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.nullValue;
 import static org.junit.Assert.assertThat;
-
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.List;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
 import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToLongFunction;
 
 import javax.annotation.Resource;
 import javax.ejb.EJB;
+import javax.ejb.EJBException;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityNotFoundException;
 import javax.persistence.OptimisticLockException;
+import javax.persistence.PersistenceContext;
 import javax.transaction.RollbackException;
+import javax.transaction.Status;
 import javax.transaction.Transaction;
 import javax.transaction.UserTransaction;
 
 import org.apache.openejb.OpenEJB;
+import org.hibernate.Hibernate;
+import org.hibernate.Session;
+import org.hibernate.bytecode.instrumentation.internal.FieldInterceptionHelper;
+import org.hibernate.stat.Statistics;
 import org.jboss.arquillian.container.test.api.Deployment;
 import org.jboss.arquillian.junit.Arquillian;
 import org.jboss.arquillian.persistence.ApplyScriptBefore;
@@ -31,12 +55,16 @@ import org.jboss.shrinkwrap.api.spec.JavaArchive;
 import org.jboss.shrinkwrap.api.spec.WebArchive;
 import org.jboss.shrinkwrap.resolver.api.maven.Maven;
 import org.jboss.shrinkwrap.resolver.api.maven.PomEquippedResolveStage;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 
 @RunWith(Arquillian.class)
 public class MoviesServiceTest {
 
+    private static final String UPDATE_MOVIE = "RetryingMoviesService.updateMovie";
+
     @Deployment
     public static WebArchive createDeploymentPackage() {
         WebArchive deploymentFile =
@@ -46,6 +74,7 @@ public class MoviesServiceTest {
                 .addAsWebInfResource(EmptyAsset.INSTANCE, "beans.xml")
                 .addAsWebInfResource("test-persistence.xml",
                     "persistence.xml")
+                .addAsWebInfResource(new File("src/main/webapp/WEB-INF/application.properties"))
                 .addAsLibraries(getHibernateDependencies());
         return deploymentFile;
     }
@@ -76,15 +105,240 @@ public class MoviesServiceTest {
     MoviesService moviesService;
     @EJB
     MoviesBatchService moviesBatchService;
+    @EJB
+    PartitionedImportService partitionedImportService;
+    @EJB
+    RetryingMoviesService retryingMoviesService;
 
     @Resource
     UserTransaction userTransaction;
 
+    @PersistenceContext
+    EntityManager entityManager;
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
     @Test
     public void shouldBatch() throws Exception {
         moviesBatchService.createMoviesInSeveralTransactions();
     }
 
+    // tag::chunks[]
+    @Test
+    public void shouldWriteMoviesInChunks() throws Exception {
+        BatchReport report = moviesBatchService
+            .createMovies(movies("chunk", 120).iterator(), 50, CommitPolicy.COMMIT);
+
+        assertThat(report.getChunks().size(), is(3));
+        assertThat(report.getChunks().get(2).getRows(), is(20));
+        assertThat(report.getCommittedRows(), is(120L));
+    }
+    // end::chunks[]
+
+    @Test
+    public void shouldRestartFromLastCommittedChunk() throws Exception {
+        List<Movie> movies = movies("restart", 120);
+        movies.get(74).setReleasedYear(1800);
+
+        try {
+            moviesBatchService.createMovies(movies.iterator(), 50, CommitPolicy.COMMIT);
+            fail("Invalid movie should abort the batch");
+        } catch (BatchWriteException e) {
+            assertThat(e.getReport().getCommittedRows(), is(50L));
+        }
+
+        List<Movie> remaining = movies("restart", 120).subList(50, 120);
+        moviesBatchService.createMovies(remaining.iterator(), 50, CommitPolicy.COMMIT);
+        assertThat(moviesService.findMoviesByTitle("restart-75").size(), is(1));
+        assertThat(moviesService.findMoviesByTitle("restart-120").size(), is(1));
+    }
+
+    @Test
+    public void shouldKeepChunkFailureWhenRollbackFails() {
+        UserTransaction failingRollback = new UserTransaction() {
+            @Override
+            public void begin() {
+            }
+
+            @Override
+            public void commit() {
+            }
+
+            @Override
+            public void rollback() {
+                throw new IllegalStateException("rollback failed");
+            }
+
+            @Override
+            public void setRollbackOnly() {
+            }
+
+            @Override
+            public int getStatus() {
+                return Status.STATUS_ACTIVE;
+            }
+
+            @Override
+            public void setTransactionTimeout(int seconds) {
+            }
+        };
+        Iterator<Movie> failingMovies = new Iterator<Movie>() {
+            @Override
+            public boolean hasNext() {
+                return true;
+            }
+
+            @Override
+            public Movie next() {
+                throw new IllegalStateException("read failed");
+            }
+        };
+
+        try {
+            new BatchWriter(entityManager, failingRollback, 50, CommitPolicy.COMMIT)
+                .write(failingMovies);
+            fail("Failing chunk should abort the batch");
+        } catch (BatchWriteException e) {
+            assertThat(e.getCause().getMessage(), is("read failed"));
+            assertThat(e.getCause().getSuppressed()[0].getMessage(), is("rollback failed"));
+        }
+    }
+
+    private static List<Movie> movies(String prefix, int count) {
+        List<Movie> movies = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            Movie movie = new Movie();
+            movie.setTitle(prefix + "-" + i);
+            movie.setReleasedYear(1999);
+            movies.add(movie);
+        }
+        return movies;
+    }
+
+    // tag::statelessimport[]
+    @Test
+    public void shouldImportMoviesWithStatelessSession() throws Exception {
+        Path file = temporaryFolder.newFile("movies.csv").toPath();
+        Files.write(file, Arrays.asList(
+            "Blade Runner,1982,Ridley Scott,Michael Deeley,Tears in rain,\"Replicants, again\"",
+            "Alien,1979,Ridley Scott,Gordon Carroll",
+            "Brazil,1985,,"), StandardCharsets.UTF_8);
+
+        BatchReport report = moviesBatchService.importMovies(file, 2);
+
+        assertThat(report.getCommittedRows(), is(3L));
+        MovieSummary bladeRunner =
+            moviesService.findMovieSummariesByTitle("Blade Runner").get(0);
+        assertThat(bladeRunner.getDirectedBy(), is("Ridley Scott"));
+        assertThat(bladeRunner.getComments(), is(2L));
+        assertThat(moviesService.findMovieSummariesByTitle("Alien").get(0)
+            .getDirectedBy(), is("Ridley Scott"));
+        assertThat(moviesService.findMovieSummariesByTitle("Brazil").get(0)
+            .getDirectedBy(), nullValue());
+    }
+    // end::statelessimport[]
+
+    @Test
+    public void shouldCommitEveryRowWhenChunkIsNotMultipleOfJdbcBatch() throws Exception {
+        BatchReport report = moviesBatchService.importMovies(csv("chunked", 173), 70);
+
+        assertThat(report.getCommittedRows(), is(173L));
+        assertThat(entityManager
+            .createQuery("SELECT COUNT(m) FROM Movie m WHERE m.title LIKE 'chunked-%'", Long.class)
+            .getSingleResult(), is(173L));
+    }
+
+    // tag::partitioned[]
+    @Test
+    public void shouldImportPartitionsInParallel() throws Exception {
+        Path file = csv("parallel", 8);
+
+        List<BatchReport> reports = partitionedImportService.importMovies(file, 4, 1, 1);
+
+        assertThat(reports.size(), is(4));
+        for (BatchReport report : reports) {
+            assertThat(report.getCommittedRows(), is(2L));
+        }
+    }
+    // end::partitioned[]
+
+    @Test
+    public void shouldKeepOtherPartitionsWhenOnePartitionFails() throws Exception {
+        Path file = csv("failing", 7);
+        Files.write(file, Arrays.asList("failing-8,19x9,,"), StandardCharsets.UTF_8,
+            StandardOpenOption.APPEND);
+
+        try {
+            partitionedImportService.importMovies(file, 4, 1, 2);
+            fail("Partition with invalid year should fail");
+        } catch (BatchWriteException e) {
+            assertThat(e.getReport().getCommittedRows(), is(1L));
+        }
+        assertThat(moviesService.findMovieSummariesByTitle("failing-1").size(), is(1));
+        assertThat(moviesService.findMovieSummariesByTitle("failing-7").size(), is(1));
+    }
+
+    @Test
+    public void shouldSplitFileSmallerThanParallelism() throws Exception {
+        Path file = csv("tiny", 1);
+
+        List<FileSegment> segments = FileSegment.split(file, 16);
+
+        assertThat(segments.size(), is(1));
+        assertThat(segments.get(0).getEnd(), is(Files.size(file)));
+    }
+
+    @Test
+    public void shouldImportAllRowsOfEveryPartition() throws Exception {
+        List<BatchReport> reports = partitionedImportService
+            .importMovies(csv("partitioned", 4000), 4, 100, 1);
+
+        long rows = 0;
+        for (BatchReport report : reports) {
+            rows += report.getCommittedRows();
+        }
+        assertThat(reports.size(), is(4));
+        assertThat(rows, is(4000L));
+    }
+
+    @Test
+    public void shouldRejectNonPositiveParallelismAndChunkSize() throws Exception {
+        Path file = csv("invalid", 10);
+        for (int[] arguments : new int[][] {{0, 100}, {-1, 100}, {4, 0}, {4, -1}}) {
+            try {
+                partitionedImportService.importMovies(file, arguments[0], arguments[1], 1);
+                fail("Parallelism " + arguments[0] + " and chunk size " + arguments[1]
+                    + " should be rejected");
+            } catch (EJBException e) {
+                assertThat(e.getCause(), instanceOf(IllegalArgumentException.class));
+            }
+        }
+    }
+
+    private Path csv(String prefix, int count) throws IOException {
+        List<String> lines = new ArrayList<>();
+        for (int i = 1; i <= count; i++) {
+            lines.add(prefix + "-" + i + ",1999,,");
+        }
+        return Files.write(temporaryFolder.newFile(prefix + ".csv").toPath(), lines,
+            StandardCharsets.UTF_8);
+    }
+
+    // tag::batching[]
+    @Test
+    public void shouldSendInsertsInJdbcBatches() throws Exception {
+        Statistics statistics = entityManager.unwrap(Session.class)
+            .getSessionFactory().getStatistics();
+        statistics.clear();
+
+        moviesBatchService.createMoviesInBatch();
+
+        assertThat(statistics.getEntityInsertCount(), is(9999L));
+        assertThat(statistics.getPrepareStatementCount() < 9999 / 10, is(true)); //<1>
+    }
+    // end::batching[]
+
     @Test
     @ShouldMatchDataSet("datasets/expected-movies.yml")
     public void shouldCreateMovies() {
@@ -127,6 +381,18 @@ public class MoviesServiceTest {
 
     // end::onetoone[]
 
+    // tag::instrument[]
+    @Test
+    @ApplyScriptBefore("scripts/drop-referential-integrity.sql")
+    @UsingDataSet("datasets/movies-with-detail-and-comments.yml")
+    public void shouldNotLoadDetailOfFoundMovie() {
+        Movie movie = moviesService.findMovieById(1);
+
+        assertThat(FieldInterceptionHelper.isInstrumented(movie), is(true));
+        assertThat(Hibernate.isPropertyInitialized(movie, "movieDetail"), is(false)); //<1>
+    }
+    // end::instrument[]
+
     // tag::onetomany[]
     @Test
     @ApplyScriptBefore("scripts/drop-referential-integrity.sql")
@@ -197,6 +463,149 @@ public class MoviesServiceTest {
         assertThat(movies, hasItem(expectedMovie));
     }
 
+    // tag::projection[]
+    @Test
+    @ApplyScriptBefore("scripts/drop-referential-integrity.sql")
+    @UsingDataSet("datasets/movies-with-detail-and-comments.yml")
+    public void shouldFindMovieSummariesByTitle() {
+        List<MovieSummary> summaries =
+            moviesService.findMovieSummariesByTitle("The Matrix");
+        assertThat(summaries.size(), is(1));
+        assertThat(summaries.get(0).getDirectedBy(), is("The Wachowski Brothers"));
+        assertThat(summaries.get(0).getComments(), is(2L));
+    }
+
+    // end::projection[]
+    @Test
+    @ApplyScriptBefore("scripts/drop-referential-integrity.sql")
+    @UsingDataSet("datasets/movies-with-detail-and-comments.yml")
+    public void shouldFindMovieSummariesByTitleCriteriaMetamodel() {
+        List<MovieSummary> summaries = moviesService
+            .findMovieSummariesByTitleCriteriaMetamodel("The Matrix Reloaded");
+        assertThat(summaries.size(), is(1));
+        assertThat(summaries.get(0).getDirectedBy(), nullValue());
+        assertThat(summaries.get(0).getComments(), is(0L));
+    }
+
+    @Test
+    @ApplyScriptBefore("scripts/drop-referential-integrity.sql")
+    @UsingDataSet("datasets/movies-with-detail-and-comments.yml")
+    public void shouldFindAllMovieSummaries() {
+        List<MovieSummary> summaries = moviesService.findAllMovieSummaries();
+        assertThat(summaries.size(), is(2));
+    }
+
+    // tag::search[]
+    @Test
+    @ApplyScriptBefore("scripts/drop-referential-integrity.sql")
+    @UsingDataSet("datasets/movies-with-detail-and-comments.yml")
+    public void shouldSearchMoviesByAnyCombinationOfFilters() {
+        assertThat(titles(moviesService.searchMovies(new MovieSearch()
+            .title("The Matrix"))), is(Arrays.asList("The Matrix")));
+        assertThat(titles(moviesService.searchMovies(new MovieSearch()
+            .releasedBetween(2000, null))), is(Arrays.asList("The Matrix Reloaded")));
+        assertThat(titles(moviesService.searchMovies(new MovieSearch()
+            .releasedBetween(1990, 2010))), is(Arrays.asList("The Matrix", "The Matrix Reloaded")));
+        assertThat(titles(moviesService.searchMovies(new MovieSearch()
+            .directedBy("The Wachowski Brothers"))), is(Arrays.asList("The Matrix")));
+        assertThat(titles(moviesService.searchMovies(new MovieSearch()
+            .title("The Matrix Reloaded").directedBy("The Wachowski Brothers"))).isEmpty(), is(true));
+    }
+
+    // end::search[]
+    @Test
+    @ApplyScriptBefore("scripts/drop-referential-integrity.sql")
+    @UsingDataSet("datasets/movies-with-detail-and-comments.yml")
+    public void shouldCompileEachSearchShapeOnce() {
+        moviesService.searchMovies(new MovieSearch().title("The Matrix").releasedBetween(1990, null));
+        int compiledSearches = MoviesService.compiledSearches();
+
+        List<Movie> movies = moviesService.searchMovies(
+            new MovieSearch().title("The Matrix Reloaded").releasedBetween(2000, null));
+        assertThat(titles(movies), is(Arrays.asList("The Matrix Reloaded")));
+        assertThat(MoviesService.compiledSearches(), is(compiledSearches));
+    }
+
+    private static List<String> titles(List<Movie> movies) {
+        List<String> titles = new ArrayList<>();
+        for (Movie movie : movies) {
+            titles.add(movie.getTitle());
+        }
+        return titles;
+    }
+
+    // tag::keyset[]
+    @Test
+    @UsingDataSet("datasets/movies-to-page.yml")
+    public void shouldPageMoviesById() {
+        Page<Movie> firstPage = moviesService.findMoviesAfter(null, 2); //<1>
+        assertThat(firstPage.getContent().size(), is(2));
+        assertThat(firstPage.hasNext(), is(true));
+
+        Page<Movie> lastPage = moviesService
+            .findMoviesAfter(firstPage.getContinuationToken(), 2); //<2>
+        assertThat(lastPage.getContent().size(), is(1));
+        assertThat(lastPage.hasNext(), is(false));
+    }
+
+    // end::keyset[]
+    @Test
+    @UsingDataSet("datasets/movies-to-page.yml")
+    public void shouldPageMoviesByTitle() {
+        Page<Movie> firstPage = moviesService.findMoviesOrderedByTitle(null, 2);
+        assertThat(firstPage.getContent().get(0).getTitle(), is("The Matrix"));
+        assertThat(firstPage.getContent().get(1).getTitle(), is("The Matrix Reloaded"));
+
+        Page<Movie> lastPage = moviesService
+            .findMoviesOrderedByTitle(firstPage.getContinuationToken(), 2);
+        assertThat(lastPage.getContent().size(), is(1));
+        assertThat(lastPage.getContent().get(0).getTitle(), is("The Matrix Revolutions"));
+        assertThat(lastPage.hasNext(), is(false));
+    }
+
+    @Test
+    @UsingDataSet("datasets/movies-to-page.yml")
+    public void shouldRejectMalformedContinuationToken() {
+        for (String token : new String[] {"not base64!", "MTIz", "YWJjOlRpdGxl"}) {
+            try {
+                moviesService.findMoviesOrderedByTitle(token, 2);
+                fail("Token " + token + " should be rejected");
+            } catch (EJBException e) {
+                assertThat(e.getCause(), instanceOf(IllegalArgumentException.class));
+            }
+        }
+    }
+
+    @Test
+    @UsingDataSet("datasets/movies-to-page.yml")
+    public void shouldRejectContinuationTokenOfAnotherOrdering() {
+        String token = moviesService.findMoviesAfter(null, 2).getContinuationToken();
+        try {
+            moviesService.findMoviesOrderedByTitle(token, 2);
+            fail("Token of paging by id should be rejected when paging by title");
+        } catch (EJBException e) {
+            assertThat(e.getCause(), instanceOf(IllegalArgumentException.class));
+        }
+    }
+
+    @Test
+    public void shouldRejectNonPositivePageSize() {
+        for (int pageSize : new int[] {0, -1}) {
+            try {
+                moviesService.findMoviesAfter(null, pageSize);
+                fail("Page size " + pageSize + " should be rejected");
+            } catch (EJBException e) {
+                assertThat(e.getCause(), instanceOf(IllegalArgumentException.class));
+            }
+            try {
+                moviesService.findMoviesOrderedByTitle(null, pageSize);
+                fail("Page size " + pageSize + " should be rejected");
+            } catch (EJBException e) {
+                assertThat(e.getCause(), instanceOf(IllegalArgumentException.class));
+            }
+        }
+    }
+
     // tag::version[]
     @Test(expected=RollbackException.class)
     @Transactional(value = TransactionMode.DISABLED) //<1>
@@ -230,4 +639,85 @@ public class MoviesServiceTest {
         movie.setReleasedYear(2000);
     }
     // end::workingversion[]
+
+    // tag::retry[]
+    @Test
+    @Transactional(TransactionMode.DISABLED)
+    @UsingDataSet("datasets/movies-with-version.yml")
+    public void shouldRetryUpdateAfterConcurrentModification() throws Exception {
+        long retries = retryMetric(RetryMetrics::getRetries);
+        AtomicInteger attempts = new AtomicInteger();
+
+        Movie movie = retryingMoviesService.updateMovie(1L, m -> {
+            if (attempts.incrementAndGet() == 1) {
+                updateConcurrently(1L, 2001); //<1>
+            }
+            m.setReleasedYear(2000);
+        });
+
+        assertThat(attempts.get(), is(2)); //<2>
+        assertThat(movie.getReleasedYear(), is(2000));
+        assertThat(moviesService.findMovieById(1L).getReleasedYear(), is(2000));
+        assertThat(retryMetric(RetryMetrics::getRetries) - retries, is(1L));
+    }
+    // end::retry[]
+
+    @Test
+    @Transactional(TransactionMode.DISABLED)
+    @UsingDataSet("datasets/movies-with-version.yml")
+    public void shouldAbortUpdateWhenAttemptsAreExhausted() throws Exception {
+        long aborted = retryMetric(RetryMetrics::getAborted);
+        AtomicInteger attempts = new AtomicInteger();
+
+        try {
+            retryingMoviesService.updateMovie(1L, m -> {
+                updateConcurrently(1L, 2000 + attempts.incrementAndGet());
+                m.setReleasedYear(1990);
+            });
+            fail("Conflicting update should fail");
+        } catch (EJBException e) {
+            assertThat(OptimisticLockRetryInterceptor.isOptimisticLockFailure(e), is(true));
+        }
+
+        assertThat(attempts.get(), is(5));
+        assertThat(retryMetric(RetryMetrics::getAborted) - aborted, is(1L));
+        assertThat(moviesService.findMovieById(1L).getReleasedYear(), is(2005));
+
+        Object published = ManagementFactory.getPlatformMBeanServer().getAttribute(
+            OptimisticLockRetryInterceptor.objectName(UPDATE_MOVIE), "Aborted");
+        assertThat(published, is((Object) retryMetric(RetryMetrics::getAborted)));
+    }
+
+    @Test
+    @Transactional(TransactionMode.DISABLED)
+    @UsingDataSet("datasets/movies-with-version.yml")
+    public void shouldFailToUpdateMissingMovie() {
+        try {
+            retryingMoviesService.updateMovie(42L, m -> m.setReleasedYear(2000));
+            fail("Missing movie should not be updated");
+        } catch (EJBException e) {
+            Throwable cause = e;
+            while (cause instanceof EJBException) {
+                cause = cause.getCause();
+            }
+            assertThat(cause, instanceOf(EntityNotFoundException.class));
+        }
+    }
+
+    private static long retryMetric(ToLongFunction<RetryMetrics> metric) {
+        RetryMetrics metrics = OptimisticLockRetryInterceptor.getMetrics(UPDATE_MOVIE);
+        return metrics == null ? 0 : metric.applyAsLong(metrics);
+    }
+
+    private void updateConcurrently(long movieId, int releasedYear) {
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            executor.submit(() -> moviesService.updateMovie(movieId,
+                m -> m.setReleasedYear(releasedYear))).get();
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        } finally {
+            executor.shutdown();
+        }
+    }
 }
@@ -0,0 +1,41 @@
+package com.scytl.hibernate;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class AddCommentBenchmark {
+
+    @Benchmark
+    public void addCommentNonePerformant(MovieDatabase database) {
+        long movieId = database.randomMovieId();
+
+        database.runInTransaction(moviesService -> moviesService
+            .addCommentNonePerformant(movieId, newComment()));
+    }
+
+    @Benchmark
+    public void createComment(MovieDatabase database) {
+        long movieId = database.randomMovieId();
+
+        database.runInTransaction(moviesService -> moviesService
+            .createComment(movieId, newComment()));
+    }
+
+    private static Comment newComment() {
+        Comment comment = new Comment();
+        comment.setReview("must see");
+        return comment;
+    }
+}
@@ -0,0 +1,61 @@
+package com.scytl.hibernate;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ConnectionPoolBenchmark {
+
+    @Benchmark
+    @Threads(1)
+    public List<Movie> callers01(PooledMovieDatabase database,
+            PooledMovieDatabase.PoolUsage poolUsage) {
+        return findAndUpdate(database);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public List<Movie> callers04(PooledMovieDatabase database,
+            PooledMovieDatabase.PoolUsage poolUsage) {
+        return findAndUpdate(database);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public List<Movie> callers16(PooledMovieDatabase database,
+            PooledMovieDatabase.PoolUsage poolUsage) {
+        return findAndUpdate(database);
+    }
+
+    @Benchmark
+    @Threads(64)
+    public List<Movie> callers64(PooledMovieDatabase database,
+            PooledMovieDatabase.PoolUsage poolUsage) {
+        return findAndUpdate(database);
+    }
+
+    private static List<Movie> findAndUpdate(PooledMovieDatabase database) {
+        long movieId = database.randomMovieId();
+        int releasedYear = ThreadLocalRandom.current().nextInt(1900, 2016);
+
+        List<Movie> movies = database.inTransaction(moviesService -> moviesService
+            .findMoviesByTitle(MovieDatabase.title(movieId), MovieFetchPlan.SUMMARY));
+        database.runInTransaction(moviesService -> moviesService
+            .updateReleasedYearImplicit(movieId, releasedYear));
+        return movies;
+    }
+}
@@ -0,0 +1,144 @@
+package com.scytl.hibernate;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.persistence.LockTimeoutException;
+import javax.persistence.OptimisticLockException;
+import javax.persistence.Persistence;
+import javax.persistence.PersistenceException;
+import javax.persistence.PessimisticLockException;
+
+import org.hibernate.StaleStateException;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Control;
+
+// tag::contention[]
+@State(Scope.Benchmark)
+public class ContendedMovieDatabase {
+
+    private static final String SERIALIZATION_FAILURE = "40001";
+    private static final String ROW_LOCKS = ";hsqldb.tx=mvcc"; //<1>
+
+    @Param({"1", "16", "1024"})
+    public int rows; //<2>
+
+    @Param({"OPTIMISTIC", "PESSIMISTIC"})
+    public LockStrategy strategy;
+
+    private EntityManagerFactory entityManagerFactory;
+    // end::contention[]
+
+    @Setup(Level.Trial)
+    public void createDatabase() {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("hibernate.connection.url",
+            "jdbc:hsqldb:mem:contention" + System.nanoTime() + ROW_LOCKS);
+        properties.put("hibernate.dialect", LockingHSQLDialect.class.getName());
+        entityManagerFactory = Persistence.createEntityManagerFactory("movie-unit", properties);
+
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            entityManager.getTransaction().begin();
+            for (long id = 1; id <= rows; id++) {
+                VersionedMovie movie = new VersionedMovie();
+                movie.setId(id);
+                movie.setTitle(MovieDatabase.title(id));
+                movie.setReleasedYear(MovieDatabase.releasedYear(id));
+                entityManager.persist(movie);
+            }
+            entityManager.getTransaction().commit();
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void dropDatabase() {
+        entityManagerFactory.close();
+    }
+
+    // tag::contention[]
+    public void updateReleasedYear(Control control, Commits commits, Failures failures) {
+        boolean measured = control.startMeasurement && !control.stopMeasurement; //<3>
+        long id = ThreadLocalRandom.current().nextLong(1, rows + 1);
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        EntityTransaction transaction = entityManager.getTransaction();
+        try {
+            transaction.begin();
+            VersionedMovie movie = strategy.read(entityManager, id, lock -> {
+                long start = System.nanoTime();
+                try {
+                    return lock.get();
+                } finally {
+                    if (measured) {
+                        failures.lockMillis += (System.nanoTime() - start) / 1e6; //<4>
+                    }
+                }
+            });
+            movie.setReleasedYear(1900 + (movie.getReleasedYear() - 1899) % 116);
+            transaction.commit();
+            if (measured) {
+                commits.commits++; //<5>
+            }
+        } catch (PersistenceException e) {
+            if (!isConflict(e)) { //<6>
+                throw e;
+            }
+            if (measured) {
+                failures.conflicts++;
+            }
+        } finally {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+            entityManager.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    public static class Commits {
+
+        public long commits;
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Failures {
+
+        public long conflicts;
+        public double lockMillis;
+    }
+    // end::contention[]
+
+    /**
+     * Optimistic lock failures, lock timeouts and serialization failures are all reported for
+     * the same write-write collision, depending on the strategy and on who writes first.
+     */
+    static boolean isConflict(Throwable e) {
+        for (Throwable cause = e; cause != null; cause = cause.getCause()) {
+            if (cause instanceof OptimisticLockException || cause instanceof StaleStateException
+                    || cause instanceof PessimisticLockException
+                    || cause instanceof LockTimeoutException
+                    || cause instanceof SQLException
+                        && SERIALIZATION_FAILURE.equals(((SQLException) cause).getSQLState())) {
+                return true;
+            }
+        }
+        return false;
+    }
+// tag::contention[]
+}
+// end::contention[]
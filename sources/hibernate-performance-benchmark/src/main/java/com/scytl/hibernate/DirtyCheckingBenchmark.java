@@ -0,0 +1,36 @@
+package com.scytl.hibernate;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+// tag::instrument[]
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class DirtyCheckingBenchmark {
+
+    private static final int CHANGES = 100;
+
+    @Benchmark
+    public void flushAfterEachChange(MovieDatabase database) {
+        database.runInTransaction(moviesService -> {
+            List<Movie> movies = moviesService.findAllMovies(MovieFetchPlan.SUMMARY); //<1>
+            for (int i = 0; i < CHANGES; i++) {
+                Movie movie = movies.get(i % movies.size());
+                movie.setReleasedYear(movie.getReleasedYear() == 2000 ? 2001 : 2000);
+                moviesService.entityManager.flush(); //<2>
+            }
+        });
+    }
+}
+// end::instrument[]
@@ -0,0 +1,75 @@
+package com.scytl.hibernate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class FanOutBenchmark {
+
+    @Param({"8"})
+    public int lookups;
+
+    @Param({"4"})
+    public int threads;
+
+    private BoundedExecutor executor;
+
+    @Setup(Level.Trial)
+    public void startExecutor() {
+        executor = new BoundedExecutor("fan-out", threads, lookups);
+    }
+
+    @TearDown(Level.Trial)
+    public void stopExecutor() {
+        executor.shutdown();
+    }
+
+    @Benchmark
+    public List<Movie> sequential(MovieDatabase database) {
+        List<Movie> movies = new ArrayList<>();
+        for (int i = 0; i < lookups; i++) {
+            movies.add(findRandomMovie(database));
+        }
+        return movies;
+    }
+
+    @Benchmark
+    public List<Movie> fanOut(MovieDatabase database) {
+        List<CompletableFuture<Movie>> futures = new ArrayList<>();
+        for (int i = 0; i < lookups; i++) {
+            futures.add(executor.submit(() -> findRandomMovie(database)));
+        }
+        List<Movie> movies = new ArrayList<>();
+        for (CompletableFuture<Movie> future : futures) {
+            movies.add(future.join());
+        }
+        return movies;
+    }
+
+    private static Movie findRandomMovie(MovieDatabase database) {
+        long movieId = database.randomMovieId();
+        return database.inTransaction(moviesService -> moviesService
+            .findMovieById(movieId, MovieFetchPlan.WITH_COMMENTS));
+    }
+}
@@ -0,0 +1,56 @@
+package com.scytl.hibernate;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// tag::fetchmode[]
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class FetchModeBenchmark {
+
+    @Param({"JOIN", "SUBSELECT", "BATCH"})
+    public AssociationFetchMode fetchMode;
+
+    @Param({"16", "256"})
+    public int batchSize; //<1>
+
+    @Setup(Level.Trial)
+    public void enableStatistics(MovieDatabase database) {
+        database.enableStatistics();
+    }
+
+    @Benchmark
+    public List<Movie> findAllMovies(MovieDatabase database, RowsRead rowsRead) {
+        long before = database.rowsRead();
+        List<Movie> movies = database.inTransaction(moviesService -> moviesService
+            .findAllMovies(fetchMode, batchSize));
+        rowsRead.rows += database.rowsRead() - before; //<2>
+        return movies;
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class RowsRead {
+
+        public long rows;
+    }
+}
+// end::fetchmode[]
@@ -0,0 +1,42 @@
+package com.scytl.hibernate;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Control;
+
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class LockContentionBenchmark {
+
+    @Benchmark
+    @Threads(1)
+    public void writers01(ContendedMovieDatabase database, Control control,
+            ContendedMovieDatabase.Commits commits, ContendedMovieDatabase.Failures failures) {
+        database.updateReleasedYear(control, commits, failures);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void writers04(ContendedMovieDatabase database, Control control,
+            ContendedMovieDatabase.Commits commits, ContendedMovieDatabase.Failures failures) {
+        database.updateReleasedYear(control, commits, failures);
+    }
+
+    @Benchmark
+    @Threads(16)
+    public void writers16(ContendedMovieDatabase database, Control control,
+            ContendedMovieDatabase.Commits commits, ContendedMovieDatabase.Failures failures) {
+        database.updateReleasedYear(control, commits, failures);
+    }
+}
@@ -0,0 +1,32 @@
+package com.scytl.hibernate;
+
+import java.util.function.Supplier;
+
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+
+// tag::strategy[]
+public enum LockStrategy {
+
+    OPTIMISTIC {
+        @Override
+        VersionedMovie read(EntityManager entityManager, long id, LockTimer timer) {
+            return entityManager.find(VersionedMovie.class, id); //<1>
+        }
+    },
+    PESSIMISTIC {
+        @Override
+        VersionedMovie read(EntityManager entityManager, long id, LockTimer timer) {
+            return timer.time(() -> entityManager
+                .find(VersionedMovie.class, id, LockModeType.PESSIMISTIC_WRITE)); //<2>
+        }
+    };
+
+    abstract VersionedMovie read(EntityManager entityManager, long id, LockTimer timer);
+
+    interface LockTimer {
+
+        VersionedMovie time(Supplier<VersionedMovie> lock);
+    }
+}
+// end::strategy[]
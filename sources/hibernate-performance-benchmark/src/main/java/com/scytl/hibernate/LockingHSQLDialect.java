@@ -0,0 +1,33 @@
+package com.scytl.hibernate;
+
+import org.hibernate.LockMode;
+import org.hibernate.dialect.HSQLDialect;
+import org.hibernate.dialect.lock.LockingStrategy;
+import org.hibernate.dialect.lock.PessimisticReadUpdateLockingStrategy;
+import org.hibernate.dialect.lock.PessimisticWriteUpdateLockingStrategy;
+import org.hibernate.persister.entity.Lockable;
+
+/**
+ * In {@code hsqldb.tx=mvcc} mode HSQLDB 2 only locks the rows a transaction writes, and
+ * {@code SELECT ... FOR UPDATE} neither waits nor locks. Pessimistic lock modes are therefore
+ * applied after the entity is loaded, by an update of its version to the same value.
+ */
+public class LockingHSQLDialect extends HSQLDialect {
+
+    @Override
+    public boolean useFollowOnLocking() {
+        return true;
+    }
+
+    @Override
+    public LockingStrategy getLockingStrategy(Lockable lockable, LockMode lockMode) {
+        switch (lockMode) {
+            case PESSIMISTIC_READ:
+                return new PessimisticReadUpdateLockingStrategy(lockable, lockMode);
+            case PESSIMISTIC_WRITE:
+                return new PessimisticWriteUpdateLockingStrategy(lockable, lockMode);
+            default:
+                return super.getLockingStrategy(lockable, lockMode);
+        }
+    }
+}
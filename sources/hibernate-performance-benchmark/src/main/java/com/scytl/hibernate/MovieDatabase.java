@@ -0,0 +1,192 @@
+package com.scytl.hibernate;
+
+import java.sql.PreparedStatement;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.EntityTransaction;
+import javax.persistence.Persistence;
+
+import org.hibernate.Session;
+import org.hibernate.jdbc.Work;
+import org.hibernate.ejb.HibernateEntityManagerFactory;
+import org.hibernate.stat.Statistics;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+@State(Scope.Benchmark)
+public class MovieDatabase {
+
+    private static final int INSERT_BATCH_SIZE = 1000;
+
+    @Param({"1000", "100000", "1000000"})
+    public int movies;
+
+    @Param({"2"})
+    public int commentsPerMovie;
+
+    EntityManagerFactory entityManagerFactory;
+
+    @Setup(Level.Trial)
+    public void createDatabase() {
+        Map<String, Object> properties = new HashMap<>();
+        configure(properties, "jdbc:hsqldb:mem:benchmark" + System.nanoTime());
+        entityManagerFactory =
+            Persistence.createEntityManagerFactory("movie-unit", properties);
+
+        populate();
+    }
+
+    protected void configure(Map<String, Object> properties, String url) {
+        properties.put("hibernate.connection.url", url);
+    }
+
+    @TearDown(Level.Trial)
+    public void dropDatabase() {
+        entityManagerFactory.close();
+    }
+
+    public <T> T inTransaction(Function<MoviesService, T> operation) {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        EntityTransaction transaction = entityManager.getTransaction();
+        try {
+            MoviesService moviesService = new MoviesService();
+            moviesService.entityManager = entityManager;
+
+            transaction.begin();
+            T result = operation.apply(moviesService);
+            transaction.commit();
+            return result;
+        } finally {
+            if (transaction.isActive()) {
+                transaction.rollback();
+            }
+            entityManager.close();
+        }
+    }
+
+    public void runInTransaction(Consumer<MoviesService> operation) {
+        inTransaction(moviesService -> {
+            operation.accept(moviesService);
+            return null;
+        });
+    }
+
+    public void enableStatistics() {
+        statistics().setStatisticsEnabled(true);
+    }
+
+    public long rowsRead() {
+        Statistics statistics = statistics();
+        long rows = 0;
+        for (String query : statistics.getQueries()) {
+            rows += statistics.getQueryStatistics(query).getExecutionRowCount();
+        }
+        return rows;
+    }
+
+    private Statistics statistics() {
+        return ((HibernateEntityManagerFactory) entityManagerFactory).getSessionFactory()
+            .getStatistics();
+    }
+
+    public long randomMovieId() {
+        return ThreadLocalRandom.current().nextLong(1, movies + 1);
+    }
+
+    public static String title(long movieId) {
+        return "Movie " + movieId;
+    }
+
+    public static int releasedYear(long movieId) {
+        return 1900 + (int) (movieId % 100);
+    }
+
+    public long insertMovieWithComments(int comments) {
+        long movieId = movies + 1;
+        long firstCommentId = (long) movies * commentsPerMovie + 1;
+        runInWork(connection -> {
+            try (PreparedStatement movie = connection.prepareStatement(
+                    "insert into Movie (id, title, releasedYear) values (?, ?, ?)");
+                 PreparedStatement comment = connection.prepareStatement(
+                    "insert into Comment (id, review, movie_id) values (?, ?, ?)")) {
+
+                movie.setLong(1, movieId);
+                movie.setString(2, title(movieId));
+                movie.setInt(3, releasedYear(movieId));
+                movie.executeUpdate();
+
+                for (int i = 0; i < comments; i++) {
+                    comment.setLong(1, firstCommentId + i);
+                    comment.setString(2, "Review " + i);
+                    comment.setLong(3, movieId);
+                    comment.addBatch();
+                    if ((i + 1) % INSERT_BATCH_SIZE == 0 || i == comments - 1) {
+                        comment.executeBatch();
+                    }
+                }
+            }
+        });
+        return movieId;
+    }
+
+    private void runInWork(Work work) {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            entityManager.getTransaction().begin();
+            entityManager.unwrap(Session.class).doWork(work);
+            entityManager.getTransaction().commit();
+        } finally {
+            entityManager.close();
+        }
+    }
+
+    private void populate() {
+        runInWork(connection -> {
+            try (PreparedStatement movie = connection.prepareStatement(
+                    "insert into Movie (id, title, releasedYear) values (?, ?, ?)");
+                 PreparedStatement movieDetail = connection.prepareStatement(
+                    "insert into MovieDetail (id, directedBy, producedBy) values (?, ?, ?)");
+                 PreparedStatement comment = connection.prepareStatement(
+                    "insert into Comment (id, review, movie_id) values (?, ?, ?)")) {
+
+                long commentId = 1;
+                for (long movieId = 1; movieId <= movies; movieId++) {
+                    movie.setLong(1, movieId);
+                    movie.setString(2, title(movieId));
+                    movie.setInt(3, releasedYear(movieId));
+                    movie.addBatch();
+
+                    movieDetail.setLong(1, movieId);
+                    movieDetail.setString(2, "Director " + movieId);
+                    movieDetail.setString(3, "Producer " + movieId);
+                    movieDetail.addBatch();
+
+                    for (int i = 0; i < commentsPerMovie; i++) {
+                        comment.setLong(1, commentId++);
+                        comment.setString(2, "Review " + i);
+                        comment.setLong(3, movieId);
+                        comment.addBatch();
+                    }
+
+                    if (movieId % INSERT_BATCH_SIZE == 0 || movieId == movies) {
+                        movie.executeBatch();
+                        movieDetail.executeBatch();
+                        if (commentsPerMovie > 0) {
+                            comment.executeBatch();
+                        }
+                    }
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,35 @@
+package com.scytl.hibernate;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class NaturalIdBenchmark {
+
+    @Benchmark
+    public List<Movie> findMoviesByTitle(MovieDatabase database) {
+        String title = MovieDatabase.title(database.randomMovieId());
+        return database.inTransaction(moviesService -> moviesService
+            .findMoviesByTitle(title, MovieFetchPlan.SUMMARY));
+    }
+
+    @Benchmark
+    public Movie findMovieByNaturalKey(MovieDatabase database) {
+        long movieId = database.randomMovieId();
+        return database.inTransaction(moviesService -> moviesService
+            .findMovieByNaturalKey(MovieDatabase.title(movieId),
+                MovieDatabase.releasedYear(movieId)));
+    }
+}
@@ -0,0 +1,105 @@
+package com.scytl.hibernate;
+
+import java.util.Map;
+
+import org.apache.tomcat.jdbc.pool.DataSource;
+import org.apache.tomcat.jdbc.pool.PoolProperties;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.ThreadParams;
+
+@State(Scope.Benchmark)
+public class PooledMovieDatabase extends MovieDatabase {
+
+    private static final String POOL_NAME = "movie-unit";
+
+    @Param({"10"})
+    public int maxActive;
+
+    @Param({"50", "0"})
+    public int statementCacheSize;
+
+    @Param({"false"})
+    public boolean slowQueryLog;
+
+    private DataSource dataSource;
+
+    @Override
+    protected void configure(Map<String, Object> properties, String url) {
+        PoolProperties pool = new PoolProperties();
+        pool.setName(POOL_NAME);
+        pool.setDriverClassName("org.hsqldb.jdbc.JDBCDriver");
+        pool.setUrl(url);
+        pool.setUsername("sa");
+        pool.setPassword("");
+        pool.setInitialSize(2);
+        pool.setMinIdle(2);
+        pool.setMaxIdle(maxActive);
+        pool.setMaxActive(maxActive);
+        pool.setMaxWait(2000);
+        pool.setJdbcInterceptors((slowQueryLog ? SlowQueryInterceptor.class.getName() + ";" : "")
+            + MeteredStatementCache.class.getName()
+            + "(prepared=true,callable=false,max=" + statementCacheSize + ")");
+        dataSource = new DataSource(pool);
+
+        properties.put("hibernate.connection.datasource", dataSource);
+    }
+
+    @TearDown(Level.Trial)
+    public void closePool() {
+        dataSource.close();
+    }
+
+    public ConnectionPoolMetrics metrics() {
+        return ConnectionPoolMetrics.of(POOL_NAME);
+    }
+
+    /**
+     * Pool metrics of each iteration. They are shared by all threads, so only the first thread
+     * reports them and the sum over threads is the pool total.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class PoolUsage {
+
+        public long acquisitions;
+        public double waitMillis;
+        public long statementCacheHits;
+        public long statementCacheMisses;
+
+        private long acquisitionsBefore;
+        private double waitMillisBefore;
+        private long statementCacheHitsBefore;
+        private long statementCacheMissesBefore;
+
+        @Setup(Level.Iteration)
+        public void start(PooledMovieDatabase database) {
+            ConnectionPoolMetrics metrics = database.metrics();
+            acquisitionsBefore = metrics.getAcquisitions();
+            waitMillisBefore = totalWaitMillis(metrics);
+            statementCacheHitsBefore = metrics.getStatementCacheHits();
+            statementCacheMissesBefore = metrics.getStatementCacheMisses();
+        }
+
+        @TearDown(Level.Iteration)
+        public void stop(PooledMovieDatabase database, ThreadParams thread) {
+            if (thread.getThreadIndex() != 0) {
+                return;
+            }
+            ConnectionPoolMetrics metrics = database.metrics();
+            acquisitions = metrics.getAcquisitions() - acquisitionsBefore;
+            waitMillis = totalWaitMillis(metrics) - waitMillisBefore;
+            statementCacheHits = metrics.getStatementCacheHits() - statementCacheHitsBefore;
+            statementCacheMisses = metrics.getStatementCacheMisses() - statementCacheMissesBefore;
+        }
+
+        private static double totalWaitMillis(ConnectionPoolMetrics metrics) {
+            return metrics.getAverageWaitMillis() * metrics.getAcquisitions();
+        }
+    }
+}
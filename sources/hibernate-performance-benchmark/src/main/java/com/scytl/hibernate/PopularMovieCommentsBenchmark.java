@@ -0,0 +1,65 @@
+package com.scytl.hibernate;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// tag::extralazy[]
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class PopularMovieCommentsBenchmark {
+
+    @Param({"100000"})
+    public int comments;
+
+    private long movieId;
+
+    @Setup(Level.Trial)
+    public void insertPopularMovie(MovieDatabase database) {
+        movieId = database.insertMovieWithComments(comments); //<1>
+    }
+
+    @Benchmark
+    public int countComments(MovieDatabase database) {
+        return database.inTransaction(moviesService -> moviesService
+            .countComments(movieId));
+    }
+
+    @Benchmark
+    public List<Comment> pageComments(MovieDatabase database) {
+        return database.inTransaction(moviesService -> moviesService
+            .findComments(movieId, comments / 2, 20));
+    }
+
+    @Benchmark
+    public void addComment(MovieDatabase database) {
+        Comment comment = new Comment();
+        comment.setReview("must see");
+
+        database.runInTransaction(moviesService -> moviesService
+            .addCommentNonePerformant(movieId, comment));
+    }
+
+    @Benchmark
+    public Comment initializeComments(MovieDatabase database) {
+        return database.inTransaction(moviesService -> moviesService
+            .findMovieById(movieId).getComments().get(comments / 2)); //<2>
+    }
+}
+// end::extralazy[]
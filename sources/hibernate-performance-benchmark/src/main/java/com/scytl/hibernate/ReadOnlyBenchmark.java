@@ -0,0 +1,98 @@
+package com.scytl.hibernate;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.persistence.EntityManager;
+
+import org.hibernate.Session;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+// tag::readonly[]
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class ReadOnlyBenchmark {
+
+    @Param({"READ_WRITE", "READ_ONLY"})
+    public ReadMode readMode;
+
+    @Benchmark
+    public List<Movie> findAllMovies(MovieDatabase database) {
+        return database.inTransaction(moviesService -> moviesService
+            .findAllMovies(MovieFetchPlan.WITH_COMMENTS, readMode));
+    }
+
+    @Benchmark
+    public void flush(LoadedMovies loadedMovies) {
+        loadedMovies.entityManager.flush(); //<1>
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 1) //<2>
+    public void heapPerMovie(MovieDatabase database, RetainedHeap heap) {
+        database.runInTransaction(moviesService -> {
+            long before = usedHeap();
+            List<Movie> movies = moviesService
+                .findAllMovies(MovieFetchPlan.WITH_COMMENTS, readMode);
+            heap.bytesPerMovie = (usedHeap() - before) / movies.size(); //<3>
+        });
+    }
+
+    private static long usedHeap() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+
+    @State(Scope.Thread)
+    public static class LoadedMovies {
+
+        EntityManager entityManager;
+
+        @Setup(Level.Invocation)
+        public void load(MovieDatabase database, ReadOnlyBenchmark benchmark) {
+            entityManager = database.entityManagerFactory.createEntityManager();
+            entityManager.getTransaction().begin();
+            entityManager.unwrap(Session.class)
+                .setDefaultReadOnly(benchmark.readMode == ReadMode.READ_ONLY);
+            entityManager.createQuery("select m from Movie m left join fetch m.comments")
+                .getResultList();
+        }
+
+        @TearDown(Level.Invocation)
+        public void close() {
+            entityManager.getTransaction().rollback();
+            entityManager.close();
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class RetainedHeap {
+
+        public long bytesPerMovie;
+    }
+}
+// end::readonly[]
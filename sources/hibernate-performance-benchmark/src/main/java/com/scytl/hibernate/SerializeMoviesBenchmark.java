@@ -0,0 +1,62 @@
+package com.scytl.hibernate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+// tag::serialize[]
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime}) //<1>
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class SerializeMoviesBenchmark {
+
+    @Benchmark
+    public String serializeMovies(MovieDatabase database) {
+        return database.inTransaction(MoviesService::serializeMovies); //<2>
+    }
+
+    @Benchmark
+    public String serializeMoviesJoinFetch(MovieDatabase database) {
+        return database.inTransaction(MoviesService::serializeMoviesJoinFetch);
+    }
+// end::serialize[]
+
+    @Benchmark
+    public void serializeMoviesStreaming(MovieDatabase database) {
+        database.runInTransaction(moviesService -> {
+            try {
+                moviesService.serializeMovies(new DiscardingWriter());
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
+    }
+
+    private static class DiscardingWriter extends Writer {
+
+        @Override
+        public void write(char[] buffer, int offset, int length) {
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+// tag::serialize[]
+}
+// end::serialize[]
@@ -0,0 +1,31 @@
+package com.scytl.hibernate;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Run with {@code -p slowQueryLog=false,true} to compare statements with and without the slow
+ * query log, none of them being over its threshold.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class SlowQueryLogBenchmark {
+
+    @Benchmark
+    public List<Movie> findMoviesByTitle(PooledMovieDatabase database) {
+        long movieId = database.randomMovieId();
+        return database.inTransaction(moviesService -> moviesService
+            .findMoviesByTitle(MovieDatabase.title(movieId), MovieFetchPlan.SUMMARY));
+    }
+}
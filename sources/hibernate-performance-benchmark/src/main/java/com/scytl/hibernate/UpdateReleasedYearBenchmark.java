@@ -0,0 +1,53 @@
+package com.scytl.hibernate;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+public class UpdateReleasedYearBenchmark {
+
+    @Benchmark
+    public void updateReleasedYearMerge(MovieDatabase database) {
+        long movieId = database.randomMovieId();
+        Movie movie = new Movie();
+        movie.setId(movieId);
+        movie.setTitle(MovieDatabase.title(movieId));
+        movie.setReleasedYear(randomYear());
+
+        database.runInTransaction(moviesService -> moviesService.updateReleasedYear(movie));
+    }
+
+    @Benchmark
+    public void updateReleasedYearImplicit(MovieDatabase database) {
+        long movieId = database.randomMovieId();
+        int releasedYear = randomYear();
+
+        database.runInTransaction(moviesService -> moviesService
+            .updateReleasedYearImplicit(movieId, releasedYear));
+    }
+
+    @Benchmark
+    public void updateReleasedYearReference(MovieDatabase database) {
+        long movieId = database.randomMovieId();
+        int releasedYear = randomYear();
+
+        database.runInTransaction(moviesService -> moviesService
+            .updateReleasedYearReference(movieId, releasedYear));
+    }
+
+    private static int randomYear() {
+        return ThreadLocalRandom.current().nextInt(1900, 2016);
+    }
+}
@@ -0,0 +1,47 @@
+package com.scytl.hibernate;
+
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.Version;
+
+@Entity
+public class VersionedMovie {
+
+    @Id
+    private long id;
+
+    private String title;
+
+    private int releasedYear;
+
+    @Version
+    private long version;
+
+    public long getId() {
+        return id;
+    }
+
+    public void setId(long id) {
+        this.id = id;
+    }
+
+    public String getTitle() {
+        return title;
+    }
+
+    public void setTitle(String title) {
+        this.title = title;
+    }
+
+    public int getReleasedYear() {
+        return releasedYear;
+    }
+
+    public void setReleasedYear(int releasedYear) {
+        this.releasedYear = releasedYear;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+}
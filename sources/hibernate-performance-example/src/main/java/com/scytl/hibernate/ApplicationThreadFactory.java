@@ -0,0 +1,30 @@
+package com.scytl.hibernate;
+
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Java EE 6 has no {@code ManagedThreadFactory}, so threads are bound here to the class loader
+ * of the application that creates the factory instead of to whichever thread submits first.
+ * Tasks must reach the container only through EJB proxies, which start their own transaction
+ * and security context.
+ */
+final class ApplicationThreadFactory implements ThreadFactory {
+
+    private final String name;
+    private final ClassLoader classLoader;
+    private final AtomicInteger threadNumber = new AtomicInteger();
+
+    ApplicationThreadFactory(String name) {
+        this.name = name;
+        this.classLoader = Thread.currentThread().getContextClassLoader();
+    }
+
+    @Override
+    public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, name + "-" + threadNumber.incrementAndGet());
+        thread.setContextClassLoader(classLoader);
+        thread.setDaemon(true);
+        return thread;
+    }
+}
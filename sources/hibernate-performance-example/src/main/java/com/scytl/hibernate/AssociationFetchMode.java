@@ -0,0 +1,8 @@
+package com.scytl.hibernate;
+
+public enum AssociationFetchMode {
+
+    JOIN,
+    BATCH,
+    SUBSELECT
+}
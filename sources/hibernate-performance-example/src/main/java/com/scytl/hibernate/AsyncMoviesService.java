@@ -0,0 +1,106 @@
+package com.scytl.hibernate;
+
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.annotation.Resource;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.EJB;
+import javax.ejb.Singleton;
+import javax.ejb.TransactionAttribute;
+import javax.ejb.TransactionAttributeType;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+
+// tag::async[]
+@Singleton
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN) //<1>
+@TransactionAttribute(TransactionAttributeType.NOT_SUPPORTED) //<2>
+public class AsyncMoviesService {
+
+    static final String THREADS = "movies.async.threads";
+    static final int QUEUE_CAPACITY = Integer.getInteger("movies.async.queueCapacity", 100);
+    static final int STOP_TIMEOUT_SECONDS =
+        Integer.getInteger("movies.async.stopTimeoutSeconds", 10);
+
+    @EJB
+    MoviesService moviesService;
+
+    @Resource(lookup = "java:app/AppName")
+    String applicationName;
+
+    private BoundedExecutor executor;
+
+    @PostConstruct
+    void start() {
+        int connections = maxActive();
+        int threads = Integer.getInteger(THREADS, Math.max(1, connections / 2)); //<3>
+        if (threads > connections) {
+            throw new IllegalStateException(THREADS + "=" + threads
+                + " is larger than the " + connections + " connections of movieDatabase"); //<4>
+        }
+        executor = new BoundedExecutor("movies-async", threads, QUEUE_CAPACITY);
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (!server.isRegistered(executor.objectName())) {
+                server.registerMBean(executor, executor.objectName()); //<5>
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot register executor movies-async", e);
+        }
+    }
+
+    @PreDestroy
+    void stop() {
+        executor.shutdown(STOP_TIMEOUT_SECONDS, TimeUnit.SECONDS); //<6>
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(executor.objectName())) {
+                server.unregisterMBean(executor.objectName());
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot unregister executor movies-async", e);
+        }
+    }
+
+    public CompletableFuture<List<Movie>> findMoviesByTitleAsync(String title,
+            MovieFetchPlan fetchPlan) {
+        return executor.submit(() -> moviesService.findMoviesByTitle(title, fetchPlan)); //<7>
+    }
+    // end::async[]
+
+    private int maxActive() {
+        ConnectionPoolMetrics pool = ConnectionPoolMetrics.of(applicationName + "/movieDatabase");
+        if (pool == null) {
+            throw new IllegalStateException("No pool metrics for movieDatabase, "
+                + "MeteredStatementCache must be one of its JdbcInterceptors");
+        }
+        return pool.getMaxActive();
+    }
+
+    public CompletableFuture<Movie> findMovieByIdAsync(long id, MovieFetchPlan fetchPlan) {
+        return executor.submit(() -> moviesService.findMovieById(id, fetchPlan));
+    }
+
+    public CompletableFuture<Integer> countCommentsAsync(long movieId) {
+        return executor.submit(() -> moviesService.countComments(movieId));
+    }
+
+    // tag::async[]
+    public CompletableFuture<Void> createCommentAsync(Long movieId, Comment comment) {
+        return executor.submit(() -> {
+            moviesService.createComment(movieId, comment);
+            return null;
+        });
+    }
+
+    public BoundedExecutor getExecutor() {
+        return executor;
+    }
+}
+// end::async[]
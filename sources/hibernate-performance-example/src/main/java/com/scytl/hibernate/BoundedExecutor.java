@@ -0,0 +1,122 @@
+package com.scytl.hibernate;
+
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+// tag::executor[]
+public class BoundedExecutor implements BoundedExecutorMXBean {
+
+    private final String name;
+    private final ThreadPoolExecutor executor;
+    private final AtomicLong rejectedTasks = new AtomicLong();
+    private final Set<CompletableFuture<?>> pending = ConcurrentHashMap.newKeySet();
+
+    public BoundedExecutor(String name, int threads, int queueCapacity) {
+        this.name = name;
+        executor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), //<1>
+            new ApplicationThreadFactory(name), //<2>
+            new ThreadPoolExecutor.AbortPolicy()); //<3>
+        executor.prestartAllCoreThreads();
+    }
+
+    public <T> CompletableFuture<T> submit(Supplier<T> operation) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        pending.add(future);
+        future.whenComplete((result, failure) -> pending.remove(future));
+        try {
+            executor.execute(() -> {
+                try {
+                    future.complete(operation.get());
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rejectedTasks.incrementAndGet();
+            future.completeExceptionally(e); //<4>
+        }
+        return future;
+    }
+    // end::executor[]
+
+    ObjectName objectName() throws JMException {
+        return new ObjectName("com.scytl.hibernate:type=BoundedExecutor,name="
+            + ObjectName.quote(name));
+    }
+
+    @Override
+    public int getThreads() {
+        return executor.getMaximumPoolSize();
+    }
+
+    @Override
+    public int getActiveThreads() {
+        return executor.getActiveCount();
+    }
+
+    @Override
+    public int getQueuedTasks() {
+        return executor.getQueue().size();
+    }
+
+    @Override
+    public int getQueueCapacity() {
+        return executor.getQueue().size() + executor.getQueue().remainingCapacity();
+    }
+
+    @Override
+    public long getCompletedTasks() {
+        return executor.getCompletedTaskCount();
+    }
+
+    @Override
+    public long getRejectedTasks() {
+        return rejectedTasks.get();
+    }
+
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * Waits up to {@code timeout} for submitted tasks, then interrupts the running ones and
+     * completes every future still pending with a {@link CancellationException}, so no caller
+     * waits for a task that will never run.
+     */
+    public void shutdown(long timeout, TimeUnit unit) {
+        executor.shutdown();
+        try {
+            if (executor.awaitTermination(timeout, unit)) {
+                return;
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        executor.shutdownNow();
+        CancellationException stopped = new CancellationException(name + " was stopped");
+        for (CompletableFuture<?> future : pending) {
+            future.completeExceptionally(stopped);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "BoundedExecutor [threads=" + getThreads() + ", active=" + getActiveThreads()
+            + ", queued=" + getQueuedTasks() + ", completed=" + getCompletedTasks()
+            + ", rejected=" + getRejectedTasks() + "]";
+    }
+// tag::executor[]
+}
+// end::executor[]
@@ -0,0 +1,16 @@
+package com.scytl.hibernate;
+
+public interface BoundedExecutorMXBean {
+
+    int getThreads();
+
+    int getActiveThreads();
+
+    int getQueuedTasks();
+
+    int getQueueCapacity();
+
+    long getCompletedTasks();
+
+    long getRejectedTasks();
+}
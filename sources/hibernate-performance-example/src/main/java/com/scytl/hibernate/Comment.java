@@ -7,7 +7,14 @@ import javax.persistence.Id;
 import javax.persistence.ManyToOne;
 import javax.validation.constraints.NotNull;
 
+import org.hibernate.annotations.Index;
+import org.hibernate.annotations.Table;
+
 @Entity
+// end::onetomany[]
+@Table(appliesTo = "Comment",
+    indexes = @Index(name = "comment_movie_idx", columnNames = {"movie_id", "id"}))
+// tag::onetomany[]
 public class Comment {
 
     @Id @GeneratedValue
@@ -0,0 +1,149 @@
+package com.scytl.hibernate;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+import org.apache.tomcat.jdbc.pool.ConnectionPool;
+
+public class ConnectionPoolMetrics implements ConnectionPoolMetricsMXBean {
+
+    private static final ConcurrentMap<String, ConnectionPoolMetrics> POOLS =
+        new ConcurrentHashMap<>();
+
+    private final String poolName;
+    private volatile ConnectionPool pool;
+    private final LongAdder acquisitions = new LongAdder();
+    private final LongAdder waitMillis = new LongAdder();
+    private final AtomicLong maxWaitMillis = new AtomicLong();
+    private final LongAdder statementCacheHits = new LongAdder();
+    private final LongAdder statementCacheMisses = new LongAdder();
+
+    private ConnectionPoolMetrics(String poolName) {
+        this.poolName = poolName;
+    }
+
+    public static ConnectionPoolMetrics of(String poolName) {
+        return POOLS.get(poolName);
+    }
+
+    static void started(ConnectionPool pool) {
+        ConnectionPoolMetrics metrics =
+            POOLS.computeIfAbsent(pool.getName(), ConnectionPoolMetrics::new);
+        metrics.pool = pool;
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (!server.isRegistered(metrics.objectName())) {
+                server.registerMBean(metrics, metrics.objectName());
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot register metrics of pool " + pool.getName(), e);
+        }
+    }
+
+    static void closed(ConnectionPool pool) {
+        ConnectionPoolMetrics metrics = POOLS.remove(pool.getName());
+        if (metrics == null) {
+            return;
+        }
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(metrics.objectName())) {
+                server.unregisterMBean(metrics.objectName());
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot unregister metrics of pool " + pool.getName(), e);
+        }
+    }
+
+    private ObjectName objectName() throws JMException {
+        return new ObjectName("com.scytl.hibernate:type=ConnectionPool,name="
+            + ObjectName.quote(poolName));
+    }
+
+    void acquired(long waitMillis) {
+        acquisitions.increment();
+        this.waitMillis.add(waitMillis);
+        maxWaitMillis.accumulateAndGet(waitMillis, Math::max);
+    }
+
+    void statementPrepared(boolean cached) {
+        (cached ? statementCacheHits : statementCacheMisses).increment();
+    }
+
+    public String getPoolName() {
+        return poolName;
+    }
+
+    @Override
+    public int getMaxActive() {
+        ConnectionPool current = pool;
+        return current == null ? 0 : current.getPoolProperties().getMaxActive();
+    }
+
+    @Override
+    public int getActiveConnections() {
+        ConnectionPool current = pool;
+        return current == null ? 0 : current.getActive();
+    }
+
+    @Override
+    public int getIdleConnections() {
+        ConnectionPool current = pool;
+        return current == null ? 0 : current.getIdle();
+    }
+
+    @Override
+    public int getWaitingThreads() {
+        ConnectionPool current = pool;
+        return current == null ? 0 : current.getWaitCount();
+    }
+
+    @Override
+    public long getAcquisitions() {
+        return acquisitions.sum();
+    }
+
+    @Override
+    public double getAverageWaitMillis() {
+        long count = acquisitions.sum();
+        return count == 0 ? 0 : (double) waitMillis.sum() / count;
+    }
+
+    @Override
+    public long getMaxWaitMillis() {
+        return maxWaitMillis.get();
+    }
+
+    @Override
+    public long getStatementCacheHits() {
+        return statementCacheHits.sum();
+    }
+
+    @Override
+    public long getStatementCacheMisses() {
+        return statementCacheMisses.sum();
+    }
+
+    @Override
+    public double getStatementCacheHitRatio() {
+        long hits = statementCacheHits.sum();
+        long total = hits + statementCacheMisses.sum();
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    @Override
+    public String toString() {
+        return "ConnectionPoolMetrics [pool=" + poolName + ", active=" + getActiveConnections()
+            + ", idle=" + getIdleConnections() + ", waiting=" + getWaitingThreads()
+            + ", acquisitions=" + getAcquisitions() + ", averageWaitMillis="
+            + getAverageWaitMillis() + ", maxWaitMillis=" + getMaxWaitMillis()
+            + ", statementCacheHitRatio=" + getStatementCacheHitRatio() + "]";
+    }
+}
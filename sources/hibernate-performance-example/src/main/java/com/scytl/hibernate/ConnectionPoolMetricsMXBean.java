@@ -0,0 +1,24 @@
+package com.scytl.hibernate;
+
+public interface ConnectionPoolMetricsMXBean {
+
+    int getMaxActive();
+
+    int getActiveConnections();
+
+    int getIdleConnections();
+
+    int getWaitingThreads();
+
+    long getAcquisitions();
+
+    double getAverageWaitMillis();
+
+    long getMaxWaitMillis();
+
+    long getStatementCacheHits();
+
+    long getStatementCacheMisses();
+
+    double getStatementCacheHitRatio();
+}
@@ -0,0 +1,113 @@
+package com.scytl.hibernate;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+import org.apache.tomcat.jdbc.pool.ConnectionPool;
+import org.apache.tomcat.jdbc.pool.PooledConnection;
+import org.apache.tomcat.jdbc.pool.interceptor.StatementCache;
+
+// tag::interceptor[]
+public class MeteredStatementCache extends StatementCache {
+
+    private ConnectionPoolMetrics metrics;
+
+    @Override
+    public void poolStarted(ConnectionPool pool) {
+        super.poolStarted(pool);
+        ConnectionPoolMetrics.started(pool);
+    }
+
+    @Override
+    public void poolClosed(ConnectionPool pool) {
+        ConnectionPoolMetrics.closed(pool);
+        super.poolClosed(pool);
+    }
+
+    @Override
+    public void reset(ConnectionPool pool, PooledConnection connection) {
+        super.reset(pool, connection);
+        if (pool != null && connection != null) { //<1>
+            metrics = ConnectionPoolMetrics.of(pool.getName());
+            if (metrics != null) {
+                metrics.acquired(System.currentTimeMillis() - connection.getTimestamp()); //<2>
+            }
+        }
+    }
+
+    @Override
+    public CachedStatement isCached(String sql) {
+        CachedStatement statement = super.isCached(sql); //<3>
+        if (metrics != null) {
+            metrics.statementPrepared(statement != null);
+        }
+        return statement;
+    }
+    // end::interceptor[]
+
+    @Override
+    protected Object createDecorator(Object proxy, Method method, Object[] args, Object statement,
+            Constructor<?> constructor, String sql)
+            throws InstantiationException, IllegalAccessException, InvocationTargetException {
+        if (!process(getTypes(), method, false)) {
+            return super.createDecorator(proxy, method, args, statement, constructor, sql);
+        }
+        return decorate(new IdentityCachedStatement((Statement) statement, sql), proxy, constructor);
+    }
+
+    private Object decorate(IdentityCachedStatement handler, Object connection,
+            Constructor<?> constructor)
+            throws InstantiationException, IllegalAccessException, InvocationTargetException {
+        Object proxy = constructor.newInstance(handler);
+        handler.setActualProxy(proxy);
+        handler.setConnection(connection);
+        handler.setConstructor(constructor);
+        return proxy;
+    }
+
+    /**
+     * Cached statement whose identity is answered by its proxy, see {@link ProxyIdentity}.
+     */
+    class IdentityCachedStatement extends CachedStatement {
+
+        IdentityCachedStatement(Statement delegate, String sql) {
+            super(delegate, sql);
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (ProxyIdentity.isIdentityMethod(method)) {
+                return ProxyIdentity.invoke(proxy, method, args);
+            }
+            return super.invoke(proxy, method, args);
+        }
+
+        @Override
+        public void closeInvoked() {
+            boolean close = true;
+            if (getCacheSize().get() < getMaxCacheSize()) {
+                IdentityCachedStatement cached = new IdentityCachedStatement(getDelegate(), getSql());
+                try {
+                    decorate(cached, getConnection(), getConstructor());
+                    close = !cacheStatement(cached);
+                } catch (Exception e) {
+                    removeStatement(cached);
+                }
+            }
+            if (close && delegate != null) {
+                try {
+                    delegate.close();
+                } catch (SQLException e) {
+                    // the statement is discarded anyway
+                }
+            }
+            closed = true;
+            delegate = null;
+        }
+    }
+// tag::interceptor[]
+}
+// end::interceptor[]
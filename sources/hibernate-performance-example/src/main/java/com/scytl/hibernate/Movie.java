@@ -5,6 +5,7 @@ import java.util.List;
 
 import javax.persistence.CascadeType;
 import javax.persistence.Entity;
+import javax.persistence.FetchType;
 import javax.persistence.GeneratedValue;
 import javax.persistence.Id;
 import javax.persistence.NamedQueries;
@@ -14,6 +15,12 @@ import javax.persistence.OneToOne;
 import javax.validation.constraints.Min;
 import javax.validation.constraints.NotNull;
 
+import org.hibernate.annotations.LazyCollection;
+import org.hibernate.annotations.LazyCollectionOption;
+import org.hibernate.annotations.LazyToOne;
+import org.hibernate.annotations.LazyToOneOption;
+import org.hibernate.annotations.NaturalId;
+import org.hibernate.annotations.NaturalIdCache;
 import org.hibernate.annotations.Proxy;
 
 @Entity
@@ -22,6 +29,9 @@ import org.hibernate.annotations.Proxy;
     @NamedQuery(name="Movie.findByTitle", 
                 query="SELECT m FROM Movie m WHERE m.title = :title") //<1>
 })
+// tag::naturalid[]
+@NaturalIdCache //<1>
+// end::naturalid[]
 // tag::dynamicupdate[]
 @Proxy(lazy=true)
 public class Movie {
@@ -29,32 +39,43 @@ public class Movie {
     @Id @GeneratedValue
     private long id;
 
+    // tag::naturalid[]
     @NotNull
+    @NaturalId(mutable = true) //<2>
     private String title;
 
     @Min(1900)
+    @NaturalId(mutable = true)
     private int releasedYear;
+    // end::naturalid[]
 
-    @OneToOne(mappedBy = "movie", cascade = CascadeType.ALL, orphanRemoval = true) //<1>
+    // tag::onetoone[]
+    @OneToOne(mappedBy = "movie", cascade = CascadeType.ALL, orphanRemoval = true, //<1>
+              fetch = FetchType.LAZY)
+    @LazyToOne(LazyToOneOption.NO_PROXY) //<2>
     private MovieDetail movieDetail;
 
     public MovieDetail getMovieDetail() {
         return movieDetail;
     }
 
-    public void setMovieDetail(MovieDetail movieDetail) { //<2>
+    public void setMovieDetail(MovieDetail movieDetail) {
         this.movieDetail = movieDetail;
         movieDetail.setMovie(this);
     }
-    public void removeMovieDetail() { //<3>
+    public void removeMovieDetail() {
         if(this.movieDetail != null) {
             this.movieDetail.setMovie(null);
         }
         this.movieDetail = null;
     }
+    // end::onetoone[]
 
+    // tag::extralazy[]
     @OneToMany(mappedBy="movie", cascade = CascadeType.ALL, orphanRemoval = true) //<1>
+    @LazyCollection(LazyCollectionOption.EXTRA) //<2>
     private List<Comment> comments = new ArrayList<Comment>();
+    // end::extralazy[]
 
     public void setComments(List<Comment> comments) {
         this.comments = comments;
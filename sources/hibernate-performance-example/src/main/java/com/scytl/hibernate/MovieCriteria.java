@@ -0,0 +1,118 @@
+package com.scytl.hibernate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringJoiner;
+
+import javax.persistence.Query;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.metamodel.SingularAttribute;
+
+/**
+ * Typed condition on movies. It is used as a Criteria API predicate, and rendered from
+ * metamodel attributes with bound parameters inside JPQL bulk statements.
+ */
+public final class MovieCriteria {
+
+    private final List<Condition> conditions = new ArrayList<>();
+
+    private MovieCriteria(Condition condition) {
+        conditions.add(condition);
+    }
+
+    public static MovieCriteria idIs(long id) {
+        return new MovieCriteria(new Condition(Movie_.id, Operator.EQUAL, id));
+    }
+
+    public static MovieCriteria titleLike(String pattern) {
+        return new MovieCriteria(new Condition(Movie_.title, Operator.LIKE, pattern));
+    }
+
+    public static MovieCriteria releasedBefore(int releasedYear) {
+        return new MovieCriteria(new Condition(Movie_.releasedYear, Operator.LESS_THAN,
+            releasedYear));
+    }
+
+    public MovieCriteria and(MovieCriteria other) {
+        conditions.addAll(other.conditions);
+        return this;
+    }
+
+    public Predicate toPredicate(CriteriaBuilder criteriaBuilder, Path<Movie> movie) {
+        List<Predicate> predicates = new ArrayList<>();
+        for (Condition condition : conditions) {
+            predicates.add(condition.operator.toPredicate(criteriaBuilder,
+                movie.get(condition.attribute), condition.value));
+        }
+        return criteriaBuilder.and(predicates.toArray(new Predicate[predicates.size()]));
+    }
+
+    String toJpql(String alias) {
+        StringJoiner jpql = new StringJoiner(" and ", "(", ")");
+        for (int i = 0; i < conditions.size(); i++) {
+            Condition condition = conditions.get(i);
+            jpql.add(alias + "." + condition.attribute.getName() + " "
+                + condition.operator.jpql + " :" + parameter(i));
+        }
+        return jpql.toString();
+    }
+
+    <T extends Query> T bind(T query) {
+        for (int i = 0; i < conditions.size(); i++) {
+            query.setParameter(parameter(i), conditions.get(i).value);
+        }
+        return query;
+    }
+
+    private static String parameter(int index) {
+        return "movieCriteria" + index;
+    }
+
+    private static final class Condition {
+
+        private final SingularAttribute<Movie, ?> attribute;
+        private final Operator operator;
+        private final Object value;
+
+        private Condition(SingularAttribute<Movie, ?> attribute, Operator operator, Object value) {
+            this.attribute = attribute;
+            this.operator = operator;
+            this.value = value;
+        }
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private enum Operator {
+
+        EQUAL("=") {
+            @Override
+            Predicate toPredicate(CriteriaBuilder criteriaBuilder, Expression path, Object value) {
+                return criteriaBuilder.equal(path, value);
+            }
+        },
+        LIKE("like") {
+            @Override
+            Predicate toPredicate(CriteriaBuilder criteriaBuilder, Expression path, Object value) {
+                return criteriaBuilder.like(path, (String) value);
+            }
+        },
+        LESS_THAN("<") {
+            @Override
+            Predicate toPredicate(CriteriaBuilder criteriaBuilder, Expression path, Object value) {
+                return criteriaBuilder.lessThan(path, (Comparable) value);
+            }
+        };
+
+        private final String jpql;
+
+        Operator(String jpql) {
+            this.jpql = jpql;
+        }
+
+        abstract Predicate toPredicate(CriteriaBuilder criteriaBuilder, Expression path,
+            Object value);
+    }
+}
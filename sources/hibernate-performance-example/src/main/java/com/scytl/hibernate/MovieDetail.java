@@ -2,24 +2,37 @@
 package com.scytl.hibernate;
 
 import javax.persistence.Entity;
-import javax.persistence.GeneratedValue;
+import javax.persistence.FetchType;
 import javax.persistence.Id;
+import javax.persistence.JoinColumn;
+import javax.persistence.MapsId;
 import javax.persistence.OneToOne;
-import javax.persistence.PrimaryKeyJoinColumn;
+
+import org.hibernate.annotations.LazyToOne;
+import org.hibernate.annotations.LazyToOneOption;
 
 @Entity
 public class MovieDetail {
 
-    @Id @GeneratedValue
-    private long id;
+    @Id
+    private long id; //<1>
 
-    @OneToOne //<1>
-    @PrimaryKeyJoinColumn //<2>
+    @OneToOne(fetch = FetchType.LAZY) //<2>
+    @MapsId //<3>
+    @JoinColumn(name = "id")
+    // end::onetoone[]
+    // tag::instrument[]
+    @LazyToOne(LazyToOneOption.NO_PROXY) //<1>
+    // end::instrument[]
+    // tag::onetoone[]
     private Movie movie;
 
     private String directedBy;
     private String producedBy;
 
+    public long getId() {
+        return id;
+    }
     public Movie getMovie() {
         return movie;
     }
@@ -0,0 +1,57 @@
+package com.scytl.hibernate;
+
+import javax.persistence.criteria.JoinType;
+import javax.persistence.criteria.Root;
+
+// tag::fetchplan[]
+public enum MovieFetchPlan {
+
+    SUMMARY("summary", false, false),
+    WITH_DETAIL("withDetail", true, false),
+    WITH_COMMENTS("withComments", false, true),
+    FULL("full", true, true);
+
+    private final String name;
+    private final boolean movieDetail;
+    private final boolean comments;
+
+    private MovieFetchPlan(String name, boolean movieDetail, boolean comments) {
+        this.name = name;
+        this.movieDetail = movieDetail;
+        this.comments = comments;
+    }
+
+    public String fetchJoins(String alias) { //<1>
+        return comments ? " left join fetch " + alias + ".comments" : "";
+    }
+
+    public void fetch(Root<Movie> movie) { //<2>
+        if (comments) {
+            movie.fetch("comments", JoinType.LEFT);
+        }
+    }
+
+    public boolean fetchesDetail() { //<3>
+        return movieDetail;
+    }
+// end::fetchplan[]
+
+    public boolean fetchesComments() {
+        return comments;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public static MovieFetchPlan named(String name) {
+        for (MovieFetchPlan plan : values()) {
+            if (plan.name.equals(name)) {
+                return plan;
+            }
+        }
+        throw new IllegalArgumentException("Unknown fetch plan " + name);
+    }
+// tag::fetchplan[]
+}
+// end::fetchplan[]
@@ -1,11 +1,22 @@
 package com.scytl.hibernate;
 
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Supplier;
 import java.util.stream.Collector;
 import java.util.stream.Collectors;
 
 import javax.ejb.Stateless;
 import javax.persistence.EntityManager;
+import javax.persistence.FlushModeType;
 import javax.persistence.PersistenceContext;
 import javax.persistence.TypedQuery;
 import javax.persistence.criteria.CriteriaBuilder;
@@ -13,9 +24,17 @@ import javax.persistence.criteria.CriteriaQuery;
 import javax.persistence.criteria.ParameterExpression;
 import javax.persistence.criteria.Root;
 
+import org.hibernate.Cache;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.Session;
+
 @Stateless
 public class MoviesService {
 
+    private static final int FETCH_SIZE = 100;
+    private static final int BULK_CHUNK_SIZE = 1000;
+
     @PersistenceContext
     EntityManager entityManager;
 
@@ -38,6 +57,99 @@ public class MoviesService {
     }
 
     // end::joinfetch[]
+
+    /**
+     * Movies are returned detached, with their detail already loaded. Except with
+     * {@link AssociationFetchMode#JOIN}, their comments collection is not a Hibernate collection
+     * but a plain list set by hand.
+     *
+     * @throws IllegalArgumentException if {@code batchSize} is lower than 1
+     */
+    // tag::fetchmode[]
+    public List<Movie> findAllMovies(AssociationFetchMode fetchMode, int batchSize) {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive but was " + batchSize);
+        }
+        if (fetchMode == AssociationFetchMode.JOIN) {
+            return detach(distinct(entityManager
+                .createQuery("select m from Movie m fetch all properties "
+                    + "left join fetch m.movieDetail left join fetch m.comments "
+                    + "order by m.id", Movie.class) //<1>
+                .getResultList()), null);
+        }
+
+        List<Movie> movies = entityManager
+            .createQuery("select m from Movie m fetch all properties " //<2>
+                + "left join fetch m.movieDetail order by m.id", Movie.class) //<3>
+            .getResultList();
+        List<Comment> comments = new ArrayList<>();
+        if (fetchMode == AssociationFetchMode.SUBSELECT) {
+            comments.addAll(entityManager
+                .createQuery("select c from Comment c where c.movie.id in "
+                    + "(select m.id from Movie m) order by c.id", Comment.class) //<4>
+                .setFlushMode(FlushModeType.COMMIT)
+                .getResultList());
+        } else {
+            for (int i = 0; i < movies.size(); i += batchSize) {
+                List<Long> ids = new ArrayList<>();
+                for (Movie movie : movies.subList(i, Math.min(i + batchSize, movies.size()))) {
+                    ids.add(movie.getId());
+                }
+                comments.addAll(entityManager
+                    .createQuery("select c from Comment c where c.movie.id in (:ids) "
+                        + "order by c.id", Comment.class) //<5>
+                    .setFlushMode(FlushModeType.COMMIT) //<6>
+                    .setParameter("ids", ids)
+                    .getResultList());
+            }
+        }
+        return detach(movies, comments);
+    }
+
+    private List<Movie> detach(List<Movie> movies, List<Comment> comments) {
+        for (Movie movie : movies) {
+            entityManager.detach(movie);
+        }
+        if (comments != null) {
+            Map<Movie, List<Comment>> commentsByMovie = new IdentityHashMap<>();
+            for (Comment comment : comments) {
+                entityManager.detach(comment);
+                commentsByMovie.computeIfAbsent(comment.getMovie(), m -> new ArrayList<>())
+                    .add(comment);
+            }
+            for (Movie movie : movies) {
+                movie.setComments(commentsByMovie.getOrDefault(movie, new ArrayList<>())); //<7>
+            }
+        }
+        return movies;
+    }
+
+    // end::fetchmode[]
+
+    // tag::streaming[]
+    public void serializeMovies(Writer writer) throws IOException {
+        Session session = entityManager.unwrap(Session.class);
+        ScrollableResults movies =
+            session
+                .createQuery("select m from Movie m left join fetch m.comments "
+                    + "order by m.id") //<1>
+                .setFetchSize(FETCH_SIZE) //<2>
+                .scroll(ScrollMode.FORWARD_ONLY);
+
+        try {
+            while (movies.next()) {
+                Movie movie = (Movie) movies.get(0);
+                writer.write(movie.toString()); //<3>
+                writer.write(movie.getComments().toString());
+                session.evict(movie); //<4>
+            }
+        } finally {
+            movies.close();
+        }
+        writer.flush();
+    }
+
+    // end::streaming[]
     
     // tag::findalllazy[]
     public String serializeMovies() {
@@ -89,15 +201,280 @@ public class MoviesService {
 
     // end::NPonetomany[]
 
+    // tag::extralazy[]
+    public int countComments(long movieId) {
+        return entityManager.find(Movie.class, movieId).getComments().size(); //<1>
+    }
+
+    public boolean hasComment(long movieId, Comment comment) {
+        return entityManager.find(Movie.class, movieId).getComments().contains(comment); //<2>
+    }
+
+    @SuppressWarnings("unchecked")
+    public List<Comment> findComments(long movieId, int firstResult, int maxResults) {
+        Movie movie = entityManager.find(Movie.class, movieId);
+        return entityManager.unwrap(Session.class)
+            .createFilter(movie.getComments(), "order by this.movie.id, this.id") //<3>
+            .setFirstResult(firstResult)
+            .setMaxResults(maxResults)
+            .list();
+    }
+
+    // end::extralazy[]
     // tag:: Ponetomany[]
     public void createComment(Long movieId, Comment comment) {
         Movie movie = new Movie();
         movie.setId(movieId);
         comment.setMovie(movie);
         entityManager.persist(comment);
+        // end::Ponetomany[]
+        evictCachedComments(movieId);
+        // tag::Ponetomany[]
     }
 
     // end::Ponetomany[]
+    /**
+     * The comment is not added to {@code Movie.comments}, so the cached collection is stale.
+     */
+    private void evictCachedComments(long movieId) {
+        entityManager.unwrap(Session.class).getSessionFactory().getCache()
+            .evictCollection(Movie.class.getName() + ".comments", movieId);
+    }
+
+    public void removeComment(long movieId, long commentId) {
+        Movie movie = entityManager.find(Movie.class, movieId);
+        movie.removeComment(entityManager.find(Comment.class, commentId));
+    }
+
+    // tag::bulkupdate[]
+    public int updateReleasedYear(MovieCriteria criteria, int releasedYear) {
+        entityManager.flush(); //<1>
+        List<Long> ids = movieIds(criteria); //<2>
+        int updated = criteria.bind(entityManager
+            .createQuery("update Movie m set m.releasedYear = :releasedYear "
+                + "where " + criteria.toJpql("m"))) //<3>
+            .setParameter("releasedYear", releasedYear)
+            .executeUpdate();
+        detach(Movie.class, ids); //<4>
+        Cache cache = entityManager.unwrap(Session.class).getSessionFactory().getCache();
+        cache.evictEntityRegion(Movie.class); //<5>
+        cache.evictNaturalIdRegion(Movie.class);
+        return updated;
+    }
+
+    // end::bulkupdate[]
+
+    // tag::bulkdelete[]
+    public int deleteCommentsOfMoviesReleasedBefore(int releasedYear) {
+        entityManager.flush();
+        MovieCriteria releasedBefore = MovieCriteria.releasedBefore(releasedYear);
+        List<Long> movieIds = movieIds(releasedBefore); //<1>
+        List<Long> commentIds = commentIds(releasedBefore);
+        int deleted = releasedBefore.bind(entityManager
+            .createQuery("delete from Comment c where c.movie.id in "
+                + "(select m.id from Movie m where " + releasedBefore.toJpql("m") + ")")) //<2>
+            .executeUpdate();
+        detach(Movie.class, movieIds); //<3>
+        detach(Comment.class, commentIds);
+        return deleted;
+    }
+
+    // end::bulkdelete[]
+
+    private List<Long> movieIds(MovieCriteria criteria) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = criteriaBuilder.createQuery(Long.class);
+        Root<Movie> movie = query.from(Movie.class);
+        query.select(movie.get(Movie_.id)).where(criteria.toPredicate(criteriaBuilder, movie));
+        return entityManager.createQuery(query).getResultList();
+    }
+
+    private List<Long> commentIds(MovieCriteria criteria) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Long> query = criteriaBuilder.createQuery(Long.class);
+        Root<Comment> comment = query.from(Comment.class);
+        query.select(comment.get(Comment_.id))
+            .where(criteria.toPredicate(criteriaBuilder, comment.join(Comment_.movie)));
+        return entityManager.createQuery(query).getResultList();
+    }
+
+    /**
+     * {@code getReference} returns the managed entity without any select when there is one,
+     * otherwise an uninitialized reference that is discarded again by detaching it.
+     */
+    private void detach(Class<?> type, List<Long> ids) {
+        for (Long id : ids) {
+            entityManager.detach(entityManager.getReference(type, id));
+        }
+    }
+
+    private static List<List<Long>> chunks(Collection<Long> ids) {
+        List<Long> sorted = new ArrayList<>(ids);
+        Collections.sort(sorted);
+        List<List<Long>> chunks = new ArrayList<>();
+        for (int i = 0; i < sorted.size(); i += BULK_CHUNK_SIZE) {
+            chunks.add(sorted.subList(i, Math.min(i + BULK_CHUNK_SIZE, sorted.size())));
+        }
+        return chunks;
+    }
+
+    public Movie findMovieById(long id) {
+        return entityManager.find(Movie.class, id);
+    }
+
+    // tag::naturalid[]
+    public Movie findMovieByNaturalKey(String title, int releasedYear) {
+        return (Movie) entityManager.unwrap(Session.class)
+            .byNaturalId(Movie.class) //<1>
+            .using("title", title)
+            .using("releasedYear", releasedYear)
+            .load(); //<2>
+    }
+    // end::naturalid[]
+
+    // tag::sharedkey[]
+    public MovieDetail findMovieDetail(long movieId) {
+        return entityManager.find(MovieDetail.class, movieId); //<1>
+    }
+
+    public void createMovieDetail(long movieId, MovieDetail movieDetail) {
+        movieDetail.setMovie(entityManager.getReference(Movie.class, movieId)); //<2>
+        entityManager.persist(movieDetail);
+    }
+
+    // end::sharedkey[]
+
+    public void removeMovie(long movieId) {
+        Movie movie = entityManager.find(Movie.class, movieId);
+        movie.getMovieDetail(); // unfetched lazy fields are not cascaded
+        entityManager.remove(movie);
+    }
+
+    // tag::fetchplan[]
+    public Movie findMovieById(long id, MovieFetchPlan fetchPlan) {
+        if (!fetchPlan.fetchesComments()) {
+            return fetchDetails(findMovieById(id), fetchPlan); //<1>
+        }
+        List<Movie> movies = entityManager
+            .createQuery("select m from Movie m" + fetchPlan.fetchJoins("m")
+                + " where m.id = :id", Movie.class)
+            .setParameter("id", id)
+            .getResultList();
+        return movies.isEmpty() ? null : fetchDetails(movies.get(0), fetchPlan);
+    }
+
+    public List<Movie> findMoviesByTitle(String title, MovieFetchPlan fetchPlan) {
+        TypedQuery<Movie> query = fetchPlan.fetchesComments()
+            ? entityManager.createQuery("select m from Movie m" + fetchPlan.fetchJoins("m")
+                + " where m.title = :title", Movie.class)
+            : entityManager.createNamedQuery("Movie.findByTitle", Movie.class); //<2>
+        query.setParameter("title", title);
+        return fetchDetails(distinct(query.getResultList()), fetchPlan);
+    }
+
+    private List<Movie> fetchDetails(List<Movie> movies, MovieFetchPlan fetchPlan) {
+        if (fetchPlan.fetchesDetail() && !movies.isEmpty()) {
+            Set<Long> ids = new HashSet<>();
+            for (Movie movie : movies) {
+                ids.add(movie.getId());
+            }
+            for (List<Long> chunk : chunks(ids)) {
+                entityManager
+                    .createQuery("select d from MovieDetail d where d.id in (:ids)",
+                        MovieDetail.class) //<3>
+                    .setParameter("ids", chunk)
+                    .getResultList();
+            }
+        }
+        return movies;
+    }
+
+    // end::fetchplan[]
+    private Movie fetchDetails(Movie movie, MovieFetchPlan fetchPlan) {
+        if (movie != null && fetchPlan.fetchesDetail()) {
+            findMovieDetail(movie.getId());
+        }
+        return movie;
+    }
+
+    public List<Movie> findMoviesByTitleCriteria(String title, MovieFetchPlan fetchPlan) {
+        CriteriaBuilder criteriaBuilder = entityManager.getCriteriaBuilder();
+        CriteriaQuery<Movie> query = criteriaBuilder.createQuery(Movie.class);
+        Root<Movie> movie = query.from(Movie.class);
+        fetchPlan.fetch(movie);
+        ParameterExpression<String> titleParameter = criteriaBuilder.parameter(String.class);
+        query.select(movie).where(criteriaBuilder.equal(movie.get("title"), titleParameter));
+
+        return fetchDetails(distinct(entityManager.createQuery(query)
+            .setParameter(titleParameter, title)
+            .getResultList()), fetchPlan);
+    }
+
+    public List<Movie> findAllMovies(MovieFetchPlan fetchPlan) {
+        TypedQuery<Movie> query = fetchPlan.fetchesComments()
+            ? entityManager.createQuery("select m from Movie m"
+                + fetchPlan.fetchJoins("m"), Movie.class)
+            : entityManager.createNamedQuery("Movie.findAll", Movie.class);
+        return fetchDetails(distinct(query.getResultList()), fetchPlan);
+    }
+
+    // tag::readonly[]
+    public List<Movie> findAllMovies(MovieFetchPlan fetchPlan, ReadMode readMode) {
+        return inReadMode(readMode, () -> findAllMovies(fetchPlan));
+    }
+
+    public List<Movie> findMoviesByTitle(String title, MovieFetchPlan fetchPlan,
+            ReadMode readMode) {
+        return inReadMode(readMode, () -> findMoviesByTitle(title, fetchPlan));
+    }
+
+    public List<Movie> findMoviesByTitleCriteria(String title, MovieFetchPlan fetchPlan,
+            ReadMode readMode) {
+        return inReadMode(readMode, () -> findMoviesByTitleCriteria(title, fetchPlan));
+    }
+
+    public String serializeMovies(ReadMode readMode) {
+        return inReadMode(readMode, this::serializeMovies);
+    }
+
+    public String serializeMoviesJoinFetch(ReadMode readMode) {
+        return inReadMode(readMode, this::serializeMoviesJoinFetch);
+    }
+
+    public void serializeMovies(Writer writer, ReadMode readMode) throws IOException {
+        Session session = entityManager.unwrap(Session.class);
+        boolean defaultReadOnly = session.isDefaultReadOnly();
+        session.setDefaultReadOnly(readMode == ReadMode.READ_ONLY);
+        try {
+            serializeMovies(writer);
+        } finally {
+            session.setDefaultReadOnly(defaultReadOnly);
+        }
+    }
+
+    private <T> T inReadMode(ReadMode readMode, Supplier<T> operation) {
+        Session session = entityManager.unwrap(Session.class);
+        boolean defaultReadOnly = session.isDefaultReadOnly();
+        session.setDefaultReadOnly(readMode == ReadMode.READ_ONLY); //<1>
+        try {
+            return operation.get();
+        } finally {
+            session.setDefaultReadOnly(defaultReadOnly); //<2>
+        }
+    }
+
+    // end::readonly[]
+    private static List<Movie> distinct(List<Movie> rows) {
+        Set<Movie> seen = Collections.newSetFromMap(new IdentityHashMap<>());
+        List<Movie> movies = new ArrayList<>();
+        for (Movie movie : rows) {
+            if (seen.add(movie)) {
+                movies.add(movie);
+            }
+        }
+        return movies;
+    }
+
     public void createMovie(Movie m) {
         entityManager.persist(m);
     }
@@ -0,0 +1,171 @@
+package com.scytl.hibernate;
+
+import java.lang.management.ManagementFactory;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import javax.ejb.ConcurrencyManagement;
+import javax.ejb.ConcurrencyManagementType;
+import javax.ejb.LocalBean;
+import javax.ejb.Singleton;
+import javax.ejb.Startup;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceUnit;
+
+import org.hibernate.Session;
+import org.hibernate.engine.spi.NamedQueryDefinition;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.stat.Statistics;
+
+// tag::statistics[]
+@Singleton
+@Startup
+@LocalBean //<1>
+@ConcurrencyManagement(ConcurrencyManagementType.BEAN)
+public class PersistenceStatistics implements PersistenceStatisticsMXBean {
+
+    static final String PERSISTENCE_UNIT = "movie-unit";
+    static final List<String> NAMED_QUERIES = Arrays.asList("Movie.findAll", "Movie.findByTitle");
+
+    @PersistenceUnit(unitName = PERSISTENCE_UNIT)
+    EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+    private final Map<String, String> namedQueries = new HashMap<>();
+
+    @PostConstruct
+    void register() {
+        EntityManager entityManager = entityManagerFactory.createEntityManager();
+        try {
+            SessionFactoryImplementor sessionFactory = (SessionFactoryImplementor) entityManager
+                .unwrap(Session.class).getSessionFactory();
+            statistics = sessionFactory.getStatistics(); //<2>
+            for (String name : NAMED_QUERIES) {
+                NamedQueryDefinition query = sessionFactory.getNamedQuery(name);
+                namedQueries.put(query.getQueryString(), name); //<3>
+            }
+        } finally {
+            entityManager.close();
+        }
+
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (!server.isRegistered(objectName())) {
+                server.registerMBean(this, objectName()); //<4>
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot register statistics of " + PERSISTENCE_UNIT, e);
+        }
+    }
+
+    @PreDestroy
+    void unregister() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(objectName())) {
+                server.unregisterMBean(objectName());
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot unregister statistics of " + PERSISTENCE_UNIT, e);
+        }
+    }
+
+    static ObjectName objectName() throws JMException {
+        return new ObjectName("com.scytl.hibernate:type=PersistenceStatistics,unit="
+            + PERSISTENCE_UNIT);
+    }
+
+    @Override
+    public Map<String, QueryMetrics> getQueries() {
+        Map<String, QueryMetrics> queries = new TreeMap<>();
+        for (String query : statistics.getQueries()) {
+            String name = namedQueries.getOrDefault(query, query); //<5>
+            queries.put(name, QueryMetrics.of(query, statistics.getQueryStatistics(query)));
+        }
+        return queries;
+    }
+    // end::statistics[]
+
+    @Override
+    public long getEntityLoadCount() {
+        return statistics.getEntityLoadCount();
+    }
+
+    @Override
+    public long getEntityFetchCount() {
+        return statistics.getEntityFetchCount();
+    }
+
+    @Override
+    public long getEntityInsertCount() {
+        return statistics.getEntityInsertCount();
+    }
+
+    @Override
+    public long getEntityUpdateCount() {
+        return statistics.getEntityUpdateCount();
+    }
+
+    @Override
+    public long getEntityDeleteCount() {
+        return statistics.getEntityDeleteCount();
+    }
+
+    @Override
+    public long getFlushCount() {
+        return statistics.getFlushCount();
+    }
+
+    @Override
+    public long getCollectionLoadCount() {
+        return statistics.getCollectionLoadCount();
+    }
+
+    @Override
+    public long getCollectionFetchCount() {
+        return statistics.getCollectionFetchCount();
+    }
+
+    @Override
+    public long getQueryExecutionCount() {
+        return statistics.getQueryExecutionCount();
+    }
+
+    @Override
+    public long getQueryExecutionMaxTime() {
+        return statistics.getQueryExecutionMaxTime();
+    }
+
+    @Override
+    public double getSecondLevelCacheHitRatio() {
+        return ratio(statistics.getSecondLevelCacheHitCount(),
+            statistics.getSecondLevelCacheMissCount());
+    }
+
+    @Override
+    public double getQueryCacheHitRatio() {
+        return ratio(statistics.getQueryCacheHitCount(), statistics.getQueryCacheMissCount());
+    }
+
+    @Override
+    public double getNaturalIdCacheHitRatio() {
+        return ratio(statistics.getNaturalIdCacheHitCount(),
+            statistics.getNaturalIdCacheMissCount());
+    }
+
+    private static double ratio(long hits, long misses) {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+// tag::statistics[]
+}
+// end::statistics[]
@@ -0,0 +1,34 @@
+package com.scytl.hibernate;
+
+import java.util.Map;
+
+public interface PersistenceStatisticsMXBean {
+
+    long getEntityLoadCount();
+
+    long getEntityFetchCount();
+
+    long getEntityInsertCount();
+
+    long getEntityUpdateCount();
+
+    long getEntityDeleteCount();
+
+    long getFlushCount();
+
+    long getCollectionLoadCount();
+
+    long getCollectionFetchCount();
+
+    long getQueryExecutionCount();
+
+    long getQueryExecutionMaxTime();
+
+    double getSecondLevelCacheHitRatio();
+
+    double getQueryCacheHitRatio();
+
+    double getNaturalIdCacheHitRatio();
+
+    Map<String, QueryMetrics> getQueries();
+}
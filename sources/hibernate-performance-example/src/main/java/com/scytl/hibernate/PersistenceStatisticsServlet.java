@@ -0,0 +1,94 @@
+package com.scytl.hibernate;
+
+import java.io.IOException;
+import java.util.Map;
+
+import javax.ejb.EJB;
+import javax.servlet.annotation.WebServlet;
+import javax.servlet.http.HttpServlet;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+
+// tag::servlet[]
+@WebServlet("/metrics/persistence")
+public class PersistenceStatisticsServlet extends HttpServlet {
+
+    private static final long serialVersionUID = 1L;
+
+    @EJB
+    PersistenceStatistics statistics;
+
+    @Override
+    protected void doGet(HttpServletRequest request, HttpServletResponse response)
+            throws IOException {
+        response.setContentType("application/json");
+        response.setCharacterEncoding("UTF-8");
+        response.getWriter().write(toJson(statistics));
+    }
+    // end::servlet[]
+
+    static String toJson(PersistenceStatisticsMXBean statistics) {
+        StringBuilder json = new StringBuilder("{");
+        json.append("\"entities\":{")
+            .append("\"loads\":").append(statistics.getEntityLoadCount())
+            .append(",\"fetches\":").append(statistics.getEntityFetchCount())
+            .append(",\"inserts\":").append(statistics.getEntityInsertCount())
+            .append(",\"updates\":").append(statistics.getEntityUpdateCount())
+            .append(",\"deletes\":").append(statistics.getEntityDeleteCount())
+            .append("},\"collections\":{")
+            .append("\"loads\":").append(statistics.getCollectionLoadCount())
+            .append(",\"fetches\":").append(statistics.getCollectionFetchCount())
+            .append("},\"flushes\":").append(statistics.getFlushCount())
+            .append(",\"cacheHitRatios\":{")
+            .append("\"secondLevel\":").append(statistics.getSecondLevelCacheHitRatio())
+            .append(",\"query\":").append(statistics.getQueryCacheHitRatio())
+            .append(",\"naturalId\":").append(statistics.getNaturalIdCacheHitRatio())
+            .append("},\"queries\":{");
+
+        String separator = "";
+        for (Map.Entry<String, QueryMetrics> entry : statistics.getQueries().entrySet()) {
+            QueryMetrics query = entry.getValue();
+            json.append(separator).append(quote(entry.getKey())).append(":{")
+                .append("\"query\":").append(quote(query.getQuery()))
+                .append(",\"executions\":").append(query.getExecutionCount())
+                .append(",\"rows\":").append(query.getExecutionRowCount())
+                .append(",\"avgMillis\":").append(query.getExecutionAvgTime())
+                .append(",\"maxMillis\":").append(query.getExecutionMaxTime())
+                .append("}");
+            separator = ",";
+        }
+        return json.append("}}").toString();
+    }
+
+    private static String quote(String value) {
+        StringBuilder quoted = new StringBuilder("\"");
+        for (char c : value.toCharArray()) {
+            switch (c) {
+            case '"':
+                quoted.append("\\\"");
+                break;
+            case '\\':
+                quoted.append("\\\\");
+                break;
+            case '\n':
+                quoted.append("\\n");
+                break;
+            case '\r':
+                quoted.append("\\r");
+                break;
+            case '\t':
+                quoted.append("\\t");
+                break;
+            default:
+                if (c < 0x20) {
+                    quoted.append(String.format("\\u%04x", (int) c));
+                } else {
+                    quoted.append(c);
+                }
+            }
+        }
+        return quoted.append('"').toString();
+    }
+// tag::servlet[]
+}
+// end::servlet[]
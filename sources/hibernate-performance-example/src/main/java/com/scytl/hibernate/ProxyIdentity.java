@@ -0,0 +1,24 @@
+package com.scytl.hibernate;
+
+import java.lang.reflect.Method;
+
+/**
+ * Cached statement proxies of tomcat-jdbc 7.0 throw on {@code hashCode} once closed, and
+ * Hibernate keeps released statements in a hash set, so identity of JDBC proxies is answered by
+ * the proxy itself instead of its delegate.
+ */
+final class ProxyIdentity {
+
+    private ProxyIdentity() {
+    }
+
+    static boolean isIdentityMethod(Method method) {
+        return method.getName().equals("hashCode") && method.getParameterTypes().length == 0
+            || method.getName().equals("equals") && method.getParameterTypes().length == 1;
+    }
+
+    static Object invoke(Object proxy, Method method, Object[] args) {
+        return method.getName().equals("hashCode")
+            ? System.identityHashCode(proxy) : proxy == args[0];
+    }
+}
@@ -0,0 +1,58 @@
+package com.scytl.hibernate;
+
+import java.beans.ConstructorProperties;
+
+import org.hibernate.stat.QueryStatistics;
+
+public class QueryMetrics {
+
+    private final String query;
+    private final long executionCount;
+    private final long executionRowCount;
+    private final long executionAvgTime;
+    private final long executionMaxTime;
+
+    @ConstructorProperties({"query", "executionCount", "executionRowCount", "executionAvgTime",
+        "executionMaxTime"})
+    public QueryMetrics(String query, long executionCount, long executionRowCount,
+            long executionAvgTime, long executionMaxTime) {
+        this.query = query;
+        this.executionCount = executionCount;
+        this.executionRowCount = executionRowCount;
+        this.executionAvgTime = executionAvgTime;
+        this.executionMaxTime = executionMaxTime;
+    }
+
+    static QueryMetrics of(String query, QueryStatistics statistics) {
+        return new QueryMetrics(query, statistics.getExecutionCount(),
+            statistics.getExecutionRowCount(), statistics.getExecutionAvgTime(),
+            statistics.getExecutionMaxTime());
+    }
+
+    public String getQuery() {
+        return query;
+    }
+
+    public long getExecutionCount() {
+        return executionCount;
+    }
+
+    public long getExecutionRowCount() {
+        return executionRowCount;
+    }
+
+    public long getExecutionAvgTime() {
+        return executionAvgTime;
+    }
+
+    public long getExecutionMaxTime() {
+        return executionMaxTime;
+    }
+
+    @Override
+    public String toString() {
+        return "QueryMetrics [query=" + query + ", executionCount=" + executionCount
+            + ", executionRowCount=" + executionRowCount + ", executionAvgTime="
+            + executionAvgTime + ", executionMaxTime=" + executionMaxTime + "]";
+    }
+}
@@ -0,0 +1,7 @@
+package com.scytl.hibernate;
+
+public enum ReadMode {
+
+    READ_WRITE,
+    READ_ONLY
+}
@@ -0,0 +1,61 @@
+package com.scytl.hibernate;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import javax.ejb.Stateless;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+
+import org.hibernate.Session;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.NaturalIdCacheStatistics;
+import org.hibernate.stat.SecondLevelCacheStatistics;
+import org.hibernate.stat.Statistics;
+
+// tag::statistics[]
+@Stateless
+public class SecondLevelCacheService {
+
+    @PersistenceContext
+    EntityManager entityManager;
+
+    public Map<String, SecondLevelCacheStatistics> getRegionStatistics() {
+        Statistics statistics = getSessionFactory().getStatistics(); //<1>
+
+        Map<String, SecondLevelCacheStatistics> regions = new TreeMap<>();
+        for (String region : statistics.getSecondLevelCacheRegionNames()) {
+            regions.put(region, statistics.getSecondLevelCacheStatistics(region)); //<2>
+        }
+        return regions;
+    }
+    // end::statistics[]
+
+    public SecondLevelCacheStatistics getRegionStatistics(String region) {
+        return getSessionFactory().getStatistics()
+            .getSecondLevelCacheStatistics(region);
+    }
+
+    public NaturalIdCacheStatistics getNaturalIdRegionStatistics(String region) {
+        return getSessionFactory().getStatistics()
+            .getNaturalIdCacheStatistics(region);
+    }
+
+    public void evictEntityRegion(Class<?> entityClass) {
+        getSessionFactory().getCache().evictEntityRegion(entityClass);
+    }
+
+    public void evictAll() {
+        org.hibernate.Cache cache = getSessionFactory().getCache();
+        cache.evictEntityRegions();
+        cache.evictCollectionRegions();
+        cache.evictQueryRegions();
+        cache.evictNaturalIdRegions();
+    }
+
+    private SessionFactory getSessionFactory() {
+        return entityManager.unwrap(Session.class).getSessionFactory();
+    }
+// tag::statistics[]
+}
+// end::statistics[]
@@ -0,0 +1,79 @@
+package com.scytl.hibernate;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+public class SlowQuery {
+
+    private final String sql;
+    private final List<String> parameterTypes;
+    private final long rows;
+    private final long elapsedNanos;
+    private final String caller;
+    private final StackTraceElement[] stack;
+
+    SlowQuery(String sql, List<String> parameterTypes, long rows, long elapsedNanos,
+            String caller, StackTraceElement[] stack) {
+        this.sql = sql;
+        this.parameterTypes = Collections.unmodifiableList(parameterTypes);
+        this.rows = rows;
+        this.elapsedNanos = elapsedNanos;
+        this.caller = caller;
+        this.stack = stack;
+    }
+
+    public String getSql() {
+        return sql;
+    }
+
+    public List<String> getParameterTypes() {
+        return parameterTypes;
+    }
+
+    /**
+     * Returns the rows read or updated by the statement, or -1 if the driver did not tell.
+     */
+    public long getRows() {
+        return rows;
+    }
+
+    public long getElapsedMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(elapsedNanos);
+    }
+
+    public String getCaller() {
+        return caller;
+    }
+
+    /**
+     * Returns the stack of the executing thread, or {@code null} if this query was not sampled.
+     */
+    public StackTraceElement[] getStack() {
+        return stack == null ? null : stack.clone();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder entry = new StringBuilder()
+            .append(getElapsedMillis()).append(" ms, ")
+            .append(rows).append(" rows, ")
+            .append(caller).append(": ")
+            .append(sql).append(' ').append(parameterTypes);
+        if (stack != null) {
+            for (StackTraceElement frame : stack) {
+                entry.append("\n\tat ").append(frame);
+            }
+        }
+        return entry.toString();
+    }
+
+    static List<String> parameterTypes(Class<?>[] types, int count) {
+        String[] names = new String[count];
+        for (int i = 0; i < count; i++) {
+            names[i] = types[i] == null ? "null" : types[i].getSimpleName();
+        }
+        return Arrays.asList(names);
+    }
+}
@@ -0,0 +1,261 @@
+package com.scytl.hibernate;
+
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.ResultSet;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.tomcat.jdbc.pool.ConnectionPool;
+import org.apache.tomcat.jdbc.pool.PoolProperties.InterceptorProperty;
+import org.apache.tomcat.jdbc.pool.PooledConnection;
+import org.apache.tomcat.jdbc.pool.interceptor.AbstractCreateStatementInterceptor;
+
+// tag::interceptor[]
+public class SlowQueryInterceptor extends AbstractCreateStatementInterceptor {
+
+    private static final int MAX_STACK_DEPTH = 32;
+    // end::interceptor[]
+    private static final ClassValue<Constructor<?>> PROXY_CONSTRUCTORS =
+        new ClassValue<Constructor<?>>() {
+            @Override
+            protected Constructor<?> computeValue(Class<?> type) {
+                try {
+                    return Proxy.getProxyClass(SlowQueryInterceptor.class.getClassLoader(), type)
+                        .getConstructor(InvocationHandler.class);
+                } catch (NoSuchMethodException e) {
+                    throw new IllegalStateException(e);
+                }
+            }
+        };
+    // tag::interceptor[]
+
+    private SlowQueryLog log;
+
+    @Override
+    public void poolStarted(ConnectionPool pool) {
+        super.poolStarted(pool);
+        SlowQueryLog.started(pool.getName(),
+            property("threshold", 100), //<1>
+            (int) property("stackSampleRate", 10),
+            (int) property("capacity", 1024));
+    }
+    // end::interceptor[]
+
+    @Override
+    public void poolClosed(ConnectionPool pool) {
+        SlowQueryLog.closed(pool.getName());
+        super.poolClosed(pool);
+    }
+
+    @Override
+    public void reset(ConnectionPool pool, PooledConnection connection) {
+        super.reset(pool, connection);
+        log = pool == null ? null : SlowQueryLog.of(pool.getName());
+    }
+
+    private long property(String name, long defaultValue) {
+        Map<String, InterceptorProperty> properties = getProperties();
+        InterceptorProperty property = properties == null ? null : properties.get(name);
+        return property == null ? defaultValue : property.getValueAsLong(defaultValue);
+    }
+
+    // tag::interceptor[]
+    @Override
+    public Object createStatement(Object proxy, Method method, Object[] args, Object statement,
+            long time) {
+        SlowQueryLog current = log;
+        if (current == null) {
+            return statement;
+        }
+        String sql = args != null && args.length > 0 && args[0] instanceof String
+            ? (String) args[0] : null;
+        return proxy(method.getReturnType(), new TimedStatement(statement, sql, current)); //<2>
+    }
+    // end::interceptor[]
+
+    @Override
+    public void closeInvoked() {
+    }
+
+    // tag::interceptor[]
+    private static Object proxy(Class<?> type, InvocationHandler handler) {
+        try {
+            return PROXY_CONSTRUCTORS.get(type).newInstance(handler); //<3>
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    // end::interceptor[]
+
+    private static Object invokeDelegate(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private static String caller(StackTraceElement[] stack) {
+        for (StackTraceElement frame : stack) {
+            if (frame.getClassName().equals(MoviesService.class.getName())) {
+                return MoviesService.class.getSimpleName() + "." + frame.getMethodName();
+            }
+        }
+        return "unknown";
+    }
+
+    private static StackTraceElement[] trim(StackTraceElement[] stack) {
+        int from = 0;
+        while (from < stack.length && (stack[from].getClassName().startsWith(
+                SlowQueryInterceptor.class.getName())
+                || stack[from].getClassName().startsWith("com.sun.proxy.")
+                || stack[from].getClassName().startsWith("java.lang.reflect.")
+                || stack[from].getClassName().startsWith("sun.reflect."))) {
+            from++;
+        }
+        return Arrays.copyOfRange(stack, from, Math.min(stack.length, from + MAX_STACK_DEPTH));
+    }
+
+    // tag::statement[]
+    private static final class TimedStatement implements InvocationHandler {
+
+        private final Object delegate;
+        private final String sql;
+        private final SlowQueryLog log;
+        private Class<?>[] parameterTypes;
+        private int parameterCount;
+
+        TimedStatement(Object delegate, String sql, SlowQueryLog log) {
+            this.delegate = delegate;
+            this.sql = sql;
+            this.log = log;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (ProxyIdentity.isIdentityMethod(method)) {
+                return ProxyIdentity.invoke(proxy, method, args);
+            }
+            String name = method.getName();
+            if (name.startsWith("set") && args != null && args.length >= 2
+                    && args[0] instanceof Integer) {
+                bind((Integer) args[0], name.equals("setNull") ? null : args[1]); //<1>
+            } else if (name.equals("clearParameters")) {
+                parameterCount = 0;
+            }
+            if (!name.startsWith("execute")) {
+                return invokeDelegate(delegate, method, args);
+            }
+
+            long start = System.nanoTime();
+            Object result = invokeDelegate(delegate, method, args);
+            long elapsed = System.nanoTime() - start;
+            if (!log.isSlow(elapsed)) { //<2>
+                return result;
+            }
+
+            StackTraceElement[] stack = new Throwable().getStackTrace(); //<3>
+            PendingSlowQuery slowQuery = new PendingSlowQuery(log,
+                sql != null ? sql : String.valueOf(args[0]),
+                SlowQuery.parameterTypes(parameterTypes, parameterCount), elapsed,
+                caller(stack), log.sampleStack() ? trim(stack) : null);
+            if (result instanceof ResultSet) {
+                return proxy(ResultSet.class,
+                    new CountingResultSet((ResultSet) result, slowQuery)); //<4>
+            }
+            slowQuery.record(updateCount(result));
+            return result;
+        }
+        // end::statement[]
+
+        private void bind(int index, Object value) {
+            if (parameterTypes == null) {
+                parameterTypes = new Class<?>[Math.max(index, 8)];
+            } else if (index > parameterTypes.length) {
+                parameterTypes = Arrays.copyOf(parameterTypes,
+                    Math.max(index, parameterTypes.length * 2));
+            }
+            parameterTypes[index - 1] = value == null ? null : value.getClass();
+            parameterCount = Math.max(parameterCount, index);
+        }
+
+        private static long updateCount(Object result) {
+            if (result instanceof Number) {
+                return ((Number) result).longValue();
+            }
+            if (result instanceof int[]) {
+                long rows = 0;
+                for (int count : (int[]) result) {
+                    if (count < 0) {
+                        return -1;
+                    }
+                    rows += count;
+                }
+                return rows;
+            }
+            return -1;
+        }
+    // tag::statement[]
+    }
+    // end::statement[]
+
+    private static final class CountingResultSet implements InvocationHandler {
+
+        private final ResultSet delegate;
+        private final PendingSlowQuery slowQuery;
+        private long rows;
+
+        CountingResultSet(ResultSet delegate, PendingSlowQuery slowQuery) {
+            this.delegate = delegate;
+            this.slowQuery = slowQuery;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            if (ProxyIdentity.isIdentityMethod(method)) {
+                return ProxyIdentity.invoke(proxy, method, args);
+            }
+            String name = method.getName();
+            Object result = invokeDelegate(delegate, method, args);
+            if (name.equals("next") && Boolean.TRUE.equals(result)) {
+                rows++;
+            } else if (name.equals("close")) {
+                slowQuery.record(rows);
+            }
+            return result;
+        }
+    }
+
+    private static final class PendingSlowQuery {
+
+        private final SlowQueryLog log;
+        private final String sql;
+        private final List<String> parameterTypes;
+        private final long elapsedNanos;
+        private final String caller;
+        private final StackTraceElement[] stack;
+        private boolean recorded;
+
+        PendingSlowQuery(SlowQueryLog log, String sql, List<String> parameterTypes,
+                long elapsedNanos, String caller, StackTraceElement[] stack) {
+            this.log = log;
+            this.sql = sql;
+            this.parameterTypes = parameterTypes;
+            this.elapsedNanos = elapsedNanos;
+            this.caller = caller;
+            this.stack = stack;
+        }
+
+        void record(long rows) {
+            if (!recorded) {
+                recorded = true;
+                log.record(new SlowQuery(sql, parameterTypes, rows, elapsedNanos, caller, stack));
+            }
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package com.scytl.hibernate;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+// tag::log[]
+public class SlowQueryLog implements SlowQueryLogMXBean {
+
+    static final Logger LOGGER = Logger.getLogger(SlowQueryLog.class.getName());
+
+    private static final ConcurrentMap<String, SlowQueryLog> POOLS = new ConcurrentHashMap<>();
+
+    private final String poolName;
+    private final BlockingQueue<SlowQuery> queue; //<1>
+    private final Thread writer;
+    private volatile long thresholdNanos;
+    private volatile int stackSampleRate;
+    private final AtomicLong slowQueries = new AtomicLong();
+    private final LongAdder loggedQueries = new LongAdder();
+    private final LongAdder droppedQueries = new LongAdder();
+
+    private SlowQueryLog(String poolName, long thresholdMillis, int stackSampleRate,
+            int capacity) {
+        this.poolName = poolName;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+        this.stackSampleRate = stackSampleRate;
+        this.writer = new Thread(this::write, "slow-query-log-" + poolName);
+        this.writer.setDaemon(true);
+    }
+
+    boolean isSlow(long elapsedNanos) {
+        return elapsedNanos >= thresholdNanos;
+    }
+
+    boolean sampleStack() {
+        int rate = stackSampleRate;
+        return rate > 0 && slowQueries.getAndIncrement() % rate == 0; //<2>
+    }
+
+    void record(SlowQuery query) {
+        if (!queue.offer(query)) { //<3>
+            droppedQueries.increment();
+        }
+    }
+
+    private void write() {
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                SlowQuery query = queue.take(); //<4>
+                LogRecord record = new LogRecord(Level.WARNING, "Slow query on {0}: {1}");
+                record.setLoggerName(LOGGER.getName());
+                record.setParameters(new Object[] {poolName, query});
+                LOGGER.log(record);
+                loggedQueries.increment();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    // end::log[]
+
+    public static SlowQueryLog of(String poolName) {
+        return POOLS.get(poolName);
+    }
+
+    static void started(String poolName, long thresholdMillis, int stackSampleRate,
+            int capacity) {
+        SlowQueryLog log = new SlowQueryLog(poolName, thresholdMillis, stackSampleRate, capacity);
+        if (POOLS.putIfAbsent(poolName, log) != null) {
+            return;
+        }
+        log.writer.start();
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (!server.isRegistered(log.objectName())) {
+                server.registerMBean(log, log.objectName());
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot register slow query log of pool " + poolName, e);
+        }
+    }
+
+    static void closed(String poolName) {
+        SlowQueryLog log = POOLS.remove(poolName);
+        if (log == null) {
+            return;
+        }
+        log.writer.interrupt();
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            if (server.isRegistered(log.objectName())) {
+                server.unregisterMBean(log.objectName());
+            }
+        } catch (JMException e) {
+            throw new IllegalStateException("Cannot unregister slow query log of pool " + poolName, e);
+        }
+    }
+
+    private ObjectName objectName() throws JMException {
+        return new ObjectName("com.scytl.hibernate:type=SlowQueryLog,name="
+            + ObjectName.quote(poolName));
+    }
+
+    public String getPoolName() {
+        return poolName;
+    }
+
+    @Override
+    public long getThresholdMillis() {
+        return TimeUnit.NANOSECONDS.toMillis(thresholdNanos);
+    }
+
+    @Override
+    public void setThresholdMillis(long thresholdMillis) {
+        this.thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMillis);
+    }
+
+    @Override
+    public int getStackSampleRate() {
+        return stackSampleRate;
+    }
+
+    @Override
+    public void setStackSampleRate(int stackSampleRate) {
+        this.stackSampleRate = stackSampleRate;
+    }
+
+    @Override
+    public long getLoggedQueries() {
+        return loggedQueries.sum();
+    }
+
+    @Override
+    public long getDroppedQueries() {
+        return droppedQueries.sum();
+    }
+
+    @Override
+    public int getPendingQueries() {
+        return queue.size();
+    }
+
+    @Override
+    public String toString() {
+        return "SlowQueryLog [pool=" + poolName + ", thresholdMillis=" + getThresholdMillis()
+            + ", logged=" + getLoggedQueries() + ", dropped=" + getDroppedQueries()
+            + ", pending=" + getPendingQueries() + "]";
+    }
+// tag::log[]
+}
+// end::log[]
@@ -0,0 +1,18 @@
+package com.scytl.hibernate;
+
+public interface SlowQueryLogMXBean {
+
+    long getThresholdMillis();
+
+    void setThresholdMillis(long thresholdMillis);
+
+    int getStackSampleRate();
+
+    void setStackSampleRate(int stackSampleRate);
+
+    long getLoggedQueries();
+
+    long getDroppedQueries();
+
+    int getPendingQueries();
+}
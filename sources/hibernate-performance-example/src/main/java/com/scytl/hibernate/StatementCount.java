@@ -0,0 +1,83 @@
+package com.scytl.hibernate;
+
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+
+public class StatementCount {
+
+    private final Map<StatementType, Map<String, Integer>> counts =
+        new EnumMap<>(StatementType.class);
+
+    void count(String sql) {
+        StatementType type = StatementType.of(sql);
+        add(type, type.tableOf(sql), 1);
+    }
+
+    void add(StatementCount other) {
+        other.counts.forEach((type, tables) -> tables
+            .forEach((table, count) -> add(type, table, count)));
+    }
+
+    private void add(StatementType type, String table, int count) {
+        counts.computeIfAbsent(type, t -> new HashMap<>())
+            .merge(table, count, Integer::sum);
+    }
+
+    public int total() {
+        int total = 0;
+        for (StatementType type : StatementType.values()) {
+            total += get(type);
+        }
+        return total;
+    }
+
+    public int get(StatementType type) {
+        return counts.getOrDefault(type, Collections.emptyMap()).values().stream()
+            .mapToInt(Integer::intValue).sum();
+    }
+
+    public int get(StatementType type, String table) {
+        return counts.getOrDefault(type, Collections.emptyMap())
+            .getOrDefault(table.toLowerCase(Locale.ENGLISH), 0);
+    }
+
+    public int selects() {
+        return get(StatementType.SELECT);
+    }
+
+    public int selects(String table) {
+        return get(StatementType.SELECT, table);
+    }
+
+    public int inserts() {
+        return get(StatementType.INSERT);
+    }
+
+    public int inserts(String table) {
+        return get(StatementType.INSERT, table);
+    }
+
+    public int updates() {
+        return get(StatementType.UPDATE);
+    }
+
+    public int updates(String table) {
+        return get(StatementType.UPDATE, table);
+    }
+
+    public int deletes() {
+        return get(StatementType.DELETE);
+    }
+
+    public int deletes(String table) {
+        return get(StatementType.DELETE, table);
+    }
+
+    @Override
+    public String toString() {
+        return "StatementCount " + counts;
+    }
+}
@@ -0,0 +1,37 @@
+package com.scytl.hibernate;
+
+public final class StatementCounter {
+
+    private static final ThreadLocal<StatementCount> CURRENT =
+        ThreadLocal.withInitial(StatementCount::new);
+
+    private StatementCounter() {
+    }
+
+    // tag::during[]
+    public static StatementCount during(Runnable operation) {
+        StatementCount statementCount = new StatementCount();
+        StatementCount previous = CURRENT.get();
+        CURRENT.set(statementCount); //<1>
+        try {
+            operation.run();
+        } finally {
+            previous.add(statementCount);
+            CURRENT.set(previous);
+        }
+        return statementCount;
+    }
+    // end::during[]
+
+    public static StatementCount current() {
+        return CURRENT.get();
+    }
+
+    public static void reset() {
+        CURRENT.set(new StatementCount());
+    }
+
+    static void count(String sql) {
+        CURRENT.get().count(sql);
+    }
+}
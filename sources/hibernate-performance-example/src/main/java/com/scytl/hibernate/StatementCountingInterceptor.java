@@ -0,0 +1,16 @@
+package com.scytl.hibernate;
+
+import org.hibernate.EmptyInterceptor;
+
+// tag::interceptor[]
+public class StatementCountingInterceptor extends EmptyInterceptor {
+
+    private static final long serialVersionUID = 1L;
+
+    @Override
+    public String onPrepareStatement(String sql) {
+        StatementCounter.count(sql); //<1>
+        return super.onPrepareStatement(sql);
+    }
+}
+// end::interceptor[]
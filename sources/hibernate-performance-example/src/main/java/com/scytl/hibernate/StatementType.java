@@ -0,0 +1,37 @@
+package com.scytl.hibernate;
+
+import java.util.Locale;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public enum StatementType {
+
+    SELECT("select", "\\bfrom\\s+([\\w.]+)"),
+    INSERT("insert", "^insert\\s+into\\s+([\\w.]+)"),
+    UPDATE("update", "^update\\s+([\\w.]+)"),
+    DELETE("delete", "^delete\\s+from\\s+([\\w.]+)"),
+    OTHER("", "(?!)");
+
+    private final String keyword;
+    private final Pattern table;
+
+    private StatementType(String keyword, String table) {
+        this.keyword = keyword;
+        this.table = Pattern.compile(table, Pattern.CASE_INSENSITIVE);
+    }
+
+    public static StatementType of(String sql) {
+        String statement = sql.trim().toLowerCase(Locale.ENGLISH);
+        for (StatementType type : values()) {
+            if (type != OTHER && statement.startsWith(type.keyword)) {
+                return type;
+            }
+        }
+        return OTHER;
+    }
+
+    String tableOf(String sql) {
+        Matcher matcher = table.matcher(sql.trim());
+        return matcher.find() ? matcher.group(1).toLowerCase(Locale.ENGLISH) : "";
+    }
+}
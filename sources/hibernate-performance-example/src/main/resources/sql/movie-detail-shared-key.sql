@@ -0,0 +1,6 @@
+-- Migrates MovieDetail from its own generated id to the id of its Movie.
+-- Details were always joined by primary key, so a detail whose id matches no movie was never reachable.
+-- Written for HSQLDB: removing the identity of a column has a different syntax on each database.
+DELETE FROM MovieDetail WHERE id NOT IN (SELECT id FROM Movie);
+ALTER TABLE MovieDetail ALTER COLUMN id DROP GENERATED;
+ALTER TABLE MovieDetail ADD CONSTRAINT FK_MovieDetail_Movie FOREIGN KEY (id) REFERENCES Movie (id);
@@ -1,13 +1,42 @@
 package com.scytl.hibernate;
 
 
+import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.notNullValue;
+import static org.hamcrest.CoreMatchers.nullValue;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Handler;
+import java.util.logging.LogRecord;
 
+import javax.annotation.Resource;
 import javax.ejb.EJB;
+import javax.ejb.EJBException;
+import javax.transaction.UserTransaction;
 
+import org.hibernate.Hibernate;
+import org.hibernate.bytecode.instrumentation.internal.FieldInterceptionHelper;
+import org.hibernate.proxy.HibernateProxy;
 import org.jboss.arquillian.container.test.api.Deployment;
 import org.jboss.arquillian.junit.Arquillian;
 import org.jboss.arquillian.persistence.ApplyScriptBefore;
@@ -21,6 +50,7 @@ import org.jboss.shrinkwrap.api.spec.JavaArchive;
 import org.jboss.shrinkwrap.api.spec.WebArchive;
 import org.jboss.shrinkwrap.resolver.api.maven.Maven;
 import org.jboss.shrinkwrap.resolver.api.maven.PomEquippedResolveStage;
+import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
 
@@ -31,18 +61,20 @@ public class MoviesServiceTest {
     public static WebArchive createDeploymentPackage() {
         WebArchive deploymentFile =
             ShrinkWrap
-                .create(WebArchive.class)
+                .create(WebArchive.class, "movies.war")
                 .addPackage("com.scytl.hibernate")
                 .addAsWebInfResource(EmptyAsset.INSTANCE, "beans.xml")
+                .addAsWebInfResource(new File("src/main/webapp/WEB-INF/resources.xml"))
                 .addAsWebInfResource("test-persistence.xml",
                     "persistence.xml")
+                .addAsResource("movies-ehcache.xml")
                 .addAsLibraries(getHibernateDependencies());
         return deploymentFile;
     }
 
     private static JavaArchive[][] getHibernateDependencies() {
 
-        JavaArchive[][] dependencies = new JavaArchive[3][];
+        JavaArchive[][] dependencies = new JavaArchive[4][];
 
         PomEquippedResolveStage maven =
             Maven.resolver().loadPomFromFile("pom.xml");
@@ -58,6 +90,10 @@ public class MoviesServiceTest {
             maven.resolve("org.hibernate:hibernate-entitymanager")
                 .withTransitivity().as(JavaArchive.class);
         dependencies[2] = entityManagerDependencies;
+        JavaArchive[] cacheDependencies =
+            maven.resolve("org.hibernate:hibernate-ehcache")
+                .withTransitivity().as(JavaArchive.class);
+        dependencies[3] = cacheDependencies;
 
         return dependencies;
     }
@@ -65,6 +101,23 @@ public class MoviesServiceTest {
     @EJB
     MoviesService moviesService;
 
+    @EJB
+    SecondLevelCacheService secondLevelCacheService;
+
+    @EJB
+    AsyncMoviesService asyncMoviesService;
+
+    @EJB
+    PersistenceStatistics persistenceStatistics;
+
+    @Resource
+    UserTransaction userTransaction;
+
+    @Before
+    public void evictSecondLevelCache() {
+        secondLevelCacheService.evictAll();
+    }
+
     @Test
     @UsingDataSet("datasets/multiple-movies.yml")
     @ApplyScriptBefore("scripts/drop-referential-integrity.sql")
@@ -79,6 +132,187 @@ public class MoviesServiceTest {
        moviesService.serializeMovies();
     }
 
+    @Test
+    @UsingDataSet("datasets/multiple-movies.yml")
+    @ApplyScriptBefore("scripts/drop-referential-integrity.sql")
+    public void shouldStreamAllMoviesWithComments() throws Exception {
+        StringWriter writer = new StringWriter();
+        StatementCount statements =
+            StatementCounter.during(() -> serializeMovies(writer));
+
+        String movies = writer.toString();
+        assertThat(movies, containsString("Movie [title=The Matrix, releasedYear=1999]"));
+        assertThat(movies, containsString("Movie [title=The Matrix Reloaded, releasedYear=2003]"));
+        assertThat(movies.split("Movie \\[").length - 1, is(2));
+        assertThat(statements.selects(), is(1));
+    }
+
+    private void serializeMovies(StringWriter writer) {
+        try {
+            moviesService.serializeMovies(writer);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    // tag::statementcount[]
+    @Test
+    @UsingDataSet("datasets/multiple-movies.yml")
+    @ApplyScriptBefore("scripts/drop-referential-integrity.sql")
+    public void shouldExecuteOneSelectWithJoinFetch() {
+        StatementCount statements =
+            StatementCounter.during(moviesService::serializeMoviesJoinFetch); //<1>
+        assertThat(statements.selects(), is(1)); //<2>
+    }
+
+    @Test
+    @UsingDataSet("datasets/multiple-movies.yml")
+    @ApplyScriptBefore("scripts/drop-referential-integrity.sql")
+    public void shouldExecuteOneSelectPerMovieWithLazy() {
+        StatementCount statements =
+            StatementCounter.during(moviesService::serializeMovies);
+        assertThat(statements.selects("Movie"), is(1));
+        assertThat(statements.selects("MovieDetail"), is(0)); //<3>
+        assertThat(statements.selects("Comment"), is(2));
+    }
+    // end::statementcount[]
+
+    // tag::fetchmode[]
+    @Test
+    @Transactional(TransactionMode.DISABLED)
+    @UsingDataSet("datasets/multiple-movies.yml")
+    @ApplyScriptBefore("scripts/drop-referential-integrity.sql")
+    public void shouldLoadCommentsWithSelectedFetchMode() {
+        assertThat(selectsToLoadComments(AssociationFetchMode.JOIN, 1), is(1));
+        assertThat(selectsToLoadComments(AssociationFetchMode.SUBSELECT, 1), is(2));
+        assertThat(selectsToLoadComments(AssociationFetchMode.BATCH, 1), is(3)); //<1>
+        assertThat(selectsToLoadComments(AssociationFetchMode.BATCH, 10), is(2));
+    }
+
+    private int selectsToLoadComments(AssociationFetchMode fetchMode, int batchSize) {
+        return StatementCounter.during(() -> {
+            List<Movie> movies = moviesService.findAllMovies(fetchMode, batchSize);
+            assertThat(movies.size(), is(2));
+            for (Movie movie : movies) {
+                assertThat(movie.getComments().size(), is(2)); //<2>
+                assertThat(movie.getMovieDetail(), is(nullValue()));
+            }
+        }).selects();
+    }
+    // end::fetchmode[]
+
+    @Test
+    @Transactional(TransactionMode.DISABLED)
+    @UsingDataSet("datasets/movies-with-detail-and-comments.yml")
+    @ApplyScriptBefore("scripts/drop-referential-integrity.sql")
+    public void shouldLoadMovieDetailWithEveryFetchMode() {
+        for (AssociationFetchMode fetchMode : AssociationFetchMode.values()) {
+            StatementCount statements = StatementCounter.during(() -> {
+                for (Movie movie : moviesService.findAllMovies(fetchMode, 1)) {
+                    assertThat(movie.getMovieDetail().getDirectedBy(),
+                        is("The Wachowski Brothers"));
+                }
+            });
+            assertThat(statements.selects("MovieDetail"), is(0));
+        }
+    }
+
+    @Test
+    @Transactional(TransactionMode.DISABLED)
+    public void shouldRejectNonPositiveBatchSize() {
+        for (int batchSize : new int[] {0, -1}) {
+            try {
+                moviesService.findAllMovies(AssociationFetchMode.BATCH, batchSize);
+                fail("Batch size " + batchSize + " should be rejected");
+            } catch (EJBException e) {
+                assertThat(e.getCause() instanceof IllegalArgumentException, is(true));
+            }
+        }
+    }
+
+    // tag::fetchplan[]
+    @Test
+    @UsingDataSet("datasets/movies-with-detail-and-comments.yml")
+    @ApplyScriptBefore("scripts/drop-referential-integrity.sql")
+    public void shouldLoadWhatFetchPlanRequiresUpFront() {
+        List<Movie> movies = new ArrayList<>();
+        StatementCount plan = StatementCounter.during(() -> movies
+            .addAll(moviesService.findMoviesByTitle("The Matrix", MovieFetchPlan.FULL)));
+
+        StatementCount use = StatementCounter.during(() -> {
+            Movie movie = movies.get(0);
+            assertThat(moviesService.findMovieDetail(movie.getId()).getDirectedBy(),
+                is("The Wachowski Brothers"));
+            assertThat(movie.getComments().size(), is(2));
+        });
+
+        assertThat(plan.selects(), is(2)); //<1>
+        assertThat(use.selects(), is(0)); //<2>
+    }
+    // end::fetchplan[]
+
+    @Test
+    @Transactional(TransactionMode.DISABLED)
+    @UsingDataSet("datasets/movies-with-detail-and-comments.yml")
+    @ApplyScriptBefore("scripts/drop-referential-integrity.sql")
+    public void shouldApplyFetchPlanToEveryFinder() {
+        assertThat(selects(() -> moviesService
+            .findMovieById(1L, MovieFetchPlan.WITH_DETAIL)), is(2));
+        assertThat(selects(() -> moviesService
+            .findMoviesByTitleCriteria("The Matrix", MovieFetchPlan.FULL)), is(2));
+
+        List<Movie> movies = moviesService.findAllMovies(MovieFetchPlan.WITH_COMMENTS);
+        assertThat(movies.size(), is(2));
+        assertThat(movies.get(0).getComments().size() + movies.get(1).getComments().size(),
+            is(3));
+    }
+
+    // tag::sharedkey[]
+    @Test
+    @Transactional(TransactionMode.DISABLED)
+    @UsingDataSet("datasets/movies-with-detail-and-comments.yml")
+    @ApplyScriptBefore("scripts/drop-referential-integrity.sql")
+    public void shouldNotLoadMovieDetailUnlessAsked() {
+        secondLevelCacheService.evictAll();
+        StatementCount statements = StatementCounter.during(() -> {
+            moviesService.findAllMovies(MovieFetchPlan.SUMMARY);
+            moviesService.findMovieById(1L);
+        });
+
+        assertThat(statements.selects("MovieDetail"), is(0)); //<1>
+    }
+
+    @Test
+    @UsingDataSet("datasets/movies.yml")
+    @ShouldMatchDataSet("datasets/expected-movies-with-detail.yml")
+    public void shouldCreateMovieDetailWithMovieId() {
+        MovieDetail movieDetail = new MovieDetail();
+        movieDetail.setDirectedBy("The Wachowski Brothers");
+        movieDetail.setProducedBy("Joel Silver");
+
+        StatementCount statements = StatementCounter
+            .during(() -> moviesService.createMovieDetail(1L, movieDetail));
+
+        assertThat(statements.selects(), is(0)); //<2>
+        assertThat(movieDetail.getId(), is(1L));
+    }
+    // end::sharedkey[]
+
+    @Test
+    @Transactional(TransactionMode.DISABLED)
+    @UsingDataSet("datasets/movies-with-detail.yml")
+    public void shouldRemoveDetailWithMovie() {
+        moviesService.removeMovie(1L);
+
+        assertThat(moviesService.findMovieById(1L), is(nullValue()));
+        assertThat(moviesService.findMovieDetail(1L), is(nullValue()));
+    }
+
+    private int selects(Runnable operation) {
+        secondLevelCacheService.evictAll();
+        return StatementCounter.during(operation).selects();
+    }
+
     @Test
     @ApplyScriptBefore("scripts/drop-referential-integrity.sql")
     @UsingDataSet("datasets/movies.yml")
@@ -122,5 +356,536 @@ public class MoviesServiceTest {
         comment.setReview("must see");
         moviesService.createComment(1L, comment);
     }
-    
+
+    @Test
+    @ApplyScriptBefore("scripts/drop-referential-integrity.sql")
+    @UsingDataSet("datasets/movies-with-comments.yml")
+    public void shouldAddCommentWithoutSelects() {
+        Comment comment = new Comment();
+        comment.setReview("must see");
+        StatementCount statements = StatementCounter
+            .during(() -> moviesService.createComment(1L, comment));
+        assertThat(statements.selects(), is(0));
+        assertThat(statements.inserts("Comment"), is(1));
+    }
+
+    // tag::extralazy[]
+    @Test
+    @ApplyScriptBefore("scripts/drop-referential-integrity.sql")
+    @UsingDataSet("datasets/movies-with-comments.yml")
+    public void shouldCountAndPageCommentsWithoutLoadingThem() {
+        Movie movie = moviesService.findMovieById(1L);
+
+        StatementCount statements = StatementCounter.during(() -> {
+            assertThat(movie.getComments().size(), is(2)); //<1>
+            assertThat(moviesService.findComments(1L, 1, 1).get(0).getReview(), is("best"));
+        });
+
+        assertThat(statements.selects("Comment"), is(2));
+        assertThat(Hibernate.isInitialized(movie.getComments()), is(false)); //<2>
+    }
+    // end::extralazy[]
+
+    @Test
+    @ApplyScriptBefore("scripts/drop-referential-integrity.sql")
+    @UsingDataSet("datasets/movies-with-comments.yml")
+    public void shouldAddCommentWithoutLoadingComments() {
+        Comment comment = new Comment();
+        comment.setReview("must see");
+
+        StatementCount statements = StatementCounter
+            .during(() -> moviesService.addCommentNonePerformant(1L, comment));
+
+        assertThat(statements.selects("Comment"), is(0));
+        assertThat(moviesService.hasComment(1L, comment), is(true));
+    }
+
+    // tag::instrument[]
+    @Test
+    @ApplyScriptBefore("scripts/drop-referential-integrity.sql")
+    @UsingDataSet("datasets/movies-with-detail-and-comments.yml")
+    public void shouldTrackChangesInsideInstrumentedEntities() {
+        Movie changed = moviesService.findMovieById(1L);
+        Movie untouched = moviesService.findMovieById(2L);
+
+        changed.setReleasedYear(2000);
+
+        assertThat(FieldInterceptionHelper.extractFieldInterceptor(changed).isDirty(),
+            is(true)); //<1>
+        assertThat(FieldInterceptionHelper.extractFieldInterceptor(untouched).isDirty(),
+            is(false));
+    }
+
+    @Test
+    @ApplyScriptBefore("scripts/drop-referential-integrity.sql")
+    @UsingDataSet("datasets/movies-with-detail-and-comments.yml")
+    public void shouldLoadMovieOfDetailWithoutProxy() {
+        MovieDetail movieDetail = moviesService.findMovieDetail(2L);
+        assertThat(Hibernate.isPropertyInitialized(movieDetail, "movie"), is(false)); //<2>
+
+        Movie movie = movieDetail.getMovie();
+
+        assertThat(movie.getTitle(), is("The Matrix Reloaded"));
+        assertThat(movie instanceof HibernateProxy, is(false)); //<3>
+    }
+    // end::instrument[]
+
+    // tag::readonly[]
+    @Test
+    @Transactional(TransactionMode.DISABLED)
+    @ApplyScriptBefore("scripts/drop-referential-integrity.sql")
+    @UsingDataSet("datasets/movies-with-detail-and-comments.yml")
+    public void shouldNeverFlushMoviesLoadedReadOnly() throws Exception {
+        userTransaction.begin();
+        Movie movie = moviesService
+            .findMoviesByTitle("The Matrix", MovieFetchPlan.WITH_COMMENTS, ReadMode.READ_ONLY)
+            .get(0);
+        movie.setReleasedYear(2000); //<1>
+        movie.getComments().get(0).setReview("changed");
+
+        StatementCounter.reset();
+        userTransaction.commit();
+
+        assertThat(StatementCounter.current().updates(), is(0)); //<2>
+        assertThat(moviesService.findMovieById(1L).getReleasedYear(), is(1999));
+    }
+    // end::readonly[]
+
+    // tag::cache[]
+    @Test
+    @Transactional(TransactionMode.DISABLED) //<1>
+    @UsingDataSet("datasets/movies-with-detail.yml")
+    public void shouldFindMovieFromSecondLevelCache() {
+        moviesService.findMovieById(1L);
+        long hits = secondLevelCacheService
+            .getRegionStatistics("com.scytl.hibernate.Movie").getHitCount();
+
+        StatementCount statements =
+            StatementCounter.during(() -> moviesService.findMovieById(1L)); //<2>
+        assertThat(statements.selects(), is(0));
+        assertThat(secondLevelCacheService
+            .getRegionStatistics("com.scytl.hibernate.Movie").getHitCount(), is(hits + 1));
+    }
+    // end::cache[]
+
+    // tag::naturalid[]
+    @Test
+    @Transactional(TransactionMode.DISABLED)
+    @UsingDataSet("datasets/movies.yml")
+    public void shouldFindMovieByNaturalKeyFromCache() {
+        assertThat(selects(() -> moviesService.findMovieByNaturalKey("The Matrix", 1999)),
+            is(2)); //<1>
+        long hits = secondLevelCacheService.getNaturalIdRegionStatistics(
+            "com.scytl.hibernate.Movie##NaturalId").getHitCount();
+
+        StatementCount statements = StatementCounter
+            .during(() -> moviesService.findMovieByNaturalKey("The Matrix", 1999));
+        assertThat(statements.selects(), is(0)); //<2>
+        assertThat(secondLevelCacheService.getNaturalIdRegionStatistics(
+            "com.scytl.hibernate.Movie##NaturalId").getHitCount(), is(hits + 1));
+    }
+    // end::naturalid[]
+
+    @Test
+    @Transactional(TransactionMode.DISABLED)
+    @UsingDataSet("datasets/movies.yml")
+    public void shouldResolveNaturalKeyWithPrimaryKeySelectWhenMovieIsEvicted() {
+        moviesService.findMovieByNaturalKey("The Matrix", 1999);
+        secondLevelCacheService.evictEntityRegion(Movie.class);
+
+        StatementCount statements = StatementCounter
+            .during(() -> moviesService.findMovieByNaturalKey("The Matrix", 1999));
+        assertThat(statements.selects("Movie"), is(1));
+    }
+
+    @Test
+    @UsingDataSet("datasets/movies.yml")
+    public void shouldFindMovieByNaturalKeyOnceInTransaction() {
+        Movie theMatrix = moviesService.findMovieByNaturalKey("The Matrix", 1999);
+
+        StatementCount statements = StatementCounter
+            .during(() -> moviesService.findMovieByNaturalKey("The Matrix", 1999));
+        assertThat(statements.selects(), is(0));
+        assertThat(theMatrix.getId(), is(1L));
+        assertThat(moviesService.findMovieByNaturalKey("The Matrix", 2000), nullValue());
+    }
+
+    @Test
+    @Transactional(TransactionMode.DISABLED)
+    @UsingDataSet("datasets/movies.yml")
+    public void shouldFindMovieByUpdatedNaturalKey() {
+        moviesService.findMovieByNaturalKey("The Matrix", 1999);
+        moviesService.updateReleasedYearImplicit(1L, 2000);
+
+        assertThat(moviesService.findMovieByNaturalKey("The Matrix", 1999), nullValue());
+        assertThat(moviesService.findMovieByNaturalKey("The Matrix", 2000).getId(), is(1L));
+    }
+
+    @Test
+    @Transactional(TransactionMode.DISABLED)
+    @UsingDataSet("datasets/movies.yml")
+    public void shouldRejectDuplicatedNaturalKey() {
+        Movie duplicated = new Movie();
+        duplicated.setTitle("The Matrix");
+        duplicated.setReleasedYear(1999);
+        try {
+            moviesService.createMovie(duplicated);
+            fail("Movie with the same title and released year should be rejected");
+        } catch (EJBException e) {
+            // unique constraint of the natural id
+        }
+    }
+
+    @Test
+    @Transactional(TransactionMode.DISABLED)
+    @ApplyScriptBefore("scripts/drop-referential-integrity.sql")
+    @UsingDataSet("datasets/movies-with-comments.yml")
+    public void shouldInvalidateCachedCommentsWhenCommentIsCreated()
+            throws Exception {
+        assertThat(countComments(1L), is(2));
+
+        Comment comment = new Comment();
+        comment.setReview("must see");
+        moviesService.createComment(1L, comment);
+
+        assertThat(countComments(1L), is(3));
+    }
+
+    @Test
+    @Transactional(TransactionMode.DISABLED)
+    @ApplyScriptBefore("scripts/drop-referential-integrity.sql")
+    @UsingDataSet("datasets/movies-with-comments.yml")
+    public void shouldInvalidateCachedCommentsWhenOrphanIsRemoved() throws Exception {
+        assertThat(reviews(1L), is(Arrays.asList("Awesome movie", "best")));
+        long hits = secondLevelCacheService
+            .getRegionStatistics("com.scytl.hibernate.Movie.comments").getHitCount();
+        assertThat(reviews(1L), is(Arrays.asList("Awesome movie", "best")));
+        assertThat(secondLevelCacheService
+            .getRegionStatistics("com.scytl.hibernate.Movie.comments").getHitCount(),
+            is(hits + 1));
+
+        moviesService.removeComment(1L, 2L);
+
+        assertThat(reviews(1L), is(Arrays.asList("Awesome movie")));
+    }
+
+    private List<String> reviews(long movieId) throws Exception {
+        userTransaction.begin();
+        try {
+            List<String> reviews = new ArrayList<>();
+            for (Comment comment : moviesService.findMovieById(movieId).getComments()) {
+                reviews.add(comment.getReview());
+            }
+            Collections.sort(reviews);
+            return reviews;
+        } finally {
+            userTransaction.commit();
+        }
+    }
+
+    private int countComments(long movieId) throws Exception {
+        userTransaction.begin();
+        try {
+            return moviesService.findMovieById(movieId).getComments().size();
+        } finally {
+            userTransaction.commit();
+        }
+    }
+
+    @Test
+    @Transactional(TransactionMode.DISABLED)
+    @UsingDataSet("datasets/movies.yml")
+    public void shouldUpdateCachedMovie() {
+        moviesService.findMovieById(1L);
+        moviesService.updateReleasedYearImplicit(1L, 2000);
+
+        assertThat(moviesService.findMovieById(1L).getReleasedYear(), is(2000));
+    }
+
+    // tag::bulkupdate[]
+    @Test
+    @ApplyScriptBefore("scripts/drop-referential-integrity.sql")
+    @UsingDataSet("datasets/multiple-movies.yml")
+    public void shouldUpdateMatchingMoviesInBulk() {
+        Movie theMatrix = moviesService.findMovieById(1L);
+
+        StatementCount statements = StatementCounter.during(() -> moviesService
+            .updateReleasedYear(MovieCriteria.titleLike("The Matrix%"), 2000));
+
+        assertThat(statements.selects(), is(1)); //<1>
+        assertThat(statements.updates("Movie"), is(1));
+        assertThat(theMatrix.getReleasedYear(), is(1999));
+        assertThat(moviesService.findMovieById(1L).getReleasedYear(), is(2000)); //<2>
+    }
+    // end::bulkupdate[]
+
+    @Test
+    @Transactional(TransactionMode.DISABLED)
+    @ApplyScriptBefore("scripts/drop-referential-integrity.sql")
+    @UsingDataSet("datasets/multiple-movies.yml")
+    public void shouldEvictCachedMoviesOnBulkUpdate() {
+        moviesService.findMovieById(2L);
+
+        moviesService.updateReleasedYear(MovieCriteria.idIs(2L), 2004);
+
+        assertThat(moviesService.findMovieById(2L).getReleasedYear(), is(2004));
+    }
+
+    @Test
+    @ApplyScriptBefore("scripts/drop-referential-integrity.sql")
+    @UsingDataSet("datasets/multiple-movies.yml")
+    public void shouldUpdateMoviesMatchingAllConditionsInBulk() {
+        int updated = moviesService.updateReleasedYear(MovieCriteria.titleLike("The Matrix%")
+            .and(MovieCriteria.releasedBefore(2000)), 2000);
+
+        assertThat(updated, is(1));
+        assertThat(moviesService.findMovieById(1L).getReleasedYear(), is(2000));
+        assertThat(moviesService.findMovieById(2L).getReleasedYear(), is(2003));
+    }
+
+    @Test
+    @ApplyScriptBefore("scripts/drop-referential-integrity.sql")
+    @UsingDataSet("datasets/multiple-movies.yml")
+    public void shouldBindCriteriaValuesAsParameters() {
+        int updated = moviesService
+            .updateReleasedYear(MovieCriteria.titleLike("x' or m.id > 0 or m.title = 'x"), 2000);
+
+        assertThat(updated, is(0));
+        assertThat(moviesService.findMovieById(1L).getReleasedYear(), is(1999));
+    }
+
+    @Test
+    @Transactional(TransactionMode.DISABLED)
+    @ApplyScriptBefore("scripts/drop-referential-integrity.sql")
+    @UsingDataSet("datasets/multiple-movies.yml")
+    public void shouldDeleteCommentsOfOldMoviesInBulk() throws Exception {
+        assertThat(countComments(1L), is(2));
+
+        userTransaction.begin();
+        Movie theMatrix = moviesService.findMovieById(1L);
+        theMatrix.getComments().size();
+        assertThat(moviesService.deleteCommentsOfMoviesReleasedBefore(2000), is(2));
+        assertThat(moviesService.findMovieById(1L).getComments().size(), is(0));
+        userTransaction.commit();
+
+        assertThat(countComments(1L), is(0));
+        assertThat(countComments(2L), is(2));
+    }
+
+    // tag::async[]
+    @Test
+    @Transactional(TransactionMode.DISABLED)
+    @ApplyScriptBefore("scripts/drop-referential-integrity.sql")
+    @UsingDataSet("datasets/multiple-movies.yml")
+    public void shouldFindMoviesInParallel() throws Exception {
+        CompletableFuture<List<Movie>> theMatrix = asyncMoviesService
+            .findMoviesByTitleAsync("The Matrix", MovieFetchPlan.WITH_COMMENTS); //<1>
+        CompletableFuture<List<Movie>> theMatrixReloaded = asyncMoviesService
+            .findMoviesByTitleAsync("The Matrix Reloaded", MovieFetchPlan.WITH_COMMENTS);
+
+        CompletableFuture.allOf(theMatrix, theMatrixReloaded).get(10, TimeUnit.SECONDS); //<2>
+        assertThat(theMatrix.get().get(0).getComments().size(), is(2));
+        assertThat(theMatrixReloaded.get().get(0).getReleasedYear(), is(2003));
+    }
+    // end::async[]
+
+    @Test
+    @Transactional(TransactionMode.DISABLED)
+    @ApplyScriptBefore("scripts/drop-referential-integrity.sql")
+    @UsingDataSet("datasets/movies-with-comments.yml")
+    public void shouldCreateCommentAsynchronously() throws Exception {
+        Comment comment = new Comment();
+        comment.setReview("must see");
+
+        asyncMoviesService.createCommentAsync(1L, comment).get(10, TimeUnit.SECONDS);
+
+        assertThat(asyncMoviesService.countCommentsAsync(1L).get(10, TimeUnit.SECONDS), is(3));
+    }
+
+    @Test
+    public void shouldRejectTasksWhenQueueIsFull() throws Exception {
+        BoundedExecutor executor = new BoundedExecutor("test", 1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            CompletableFuture<Boolean> running = executor.submit(() -> awaitQuietly(release));
+            while (executor.getActiveThreads() == 0 || executor.getQueuedTasks() > 0) {
+                Thread.yield();
+            }
+            CompletableFuture<Boolean> queued = executor.submit(() -> true);
+
+            CompletableFuture<Boolean> rejected = executor.submit(() -> true);
+            assertThat(rejected.isCompletedExceptionally(), is(true));
+            assertThat(executor.getRejectedTasks(), is(1L));
+            try {
+                rejected.get();
+                fail("Task should be rejected when queue is full");
+            } catch (ExecutionException e) {
+                assertThat(e.getCause() instanceof RejectedExecutionException, is(true));
+            }
+
+            release.countDown();
+            assertThat(running.get(10, TimeUnit.SECONDS), is(true));
+            assertThat(queued.get(10, TimeUnit.SECONDS), is(true));
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void shouldFailPendingTasksWhenStoppedAfterTimeout() throws Exception {
+        BoundedExecutor executor = new BoundedExecutor("test", 1, 1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            CompletableFuture<Boolean> running = executor.submit(() -> awaitQuietly(release));
+            while (executor.getActiveThreads() == 0 || executor.getQueuedTasks() > 0) {
+                Thread.yield();
+            }
+            CompletableFuture<Boolean> queued = executor.submit(() -> true);
+
+            executor.shutdown(100, TimeUnit.MILLISECONDS);
+
+            assertThat(running.isDone(), is(true));
+            assertThat(queued.isCompletedExceptionally(), is(true));
+            try {
+                queued.get();
+                fail("Task queued when executor is stopped should never complete");
+            } catch (CancellationException e) {
+                // completed exceptionally by shutdown
+            }
+        } finally {
+            release.countDown();
+        }
+    }
+
+    @Test
+    public void shouldSizeAsyncExecutorFromConnectionPool() throws Exception {
+        BoundedExecutor executor = asyncMoviesService.getExecutor();
+
+        assertThat(executor.getThreads(), is(5));
+        Object rejected = ManagementFactory.getPlatformMBeanServer()
+            .getAttribute(executor.objectName(), "RejectedTasks");
+        assertThat(rejected, is((Object) executor.getRejectedTasks()));
+    }
+
+    private static boolean awaitQuietly(CountDownLatch latch) {
+        try {
+            return latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    // tag::pool[]
+    @Test
+    @UsingDataSet("datasets/multiple-movies.yml")
+    @ApplyScriptBefore("scripts/drop-referential-integrity.sql")
+    @Transactional(TransactionMode.DISABLED)
+    public void shouldReuseCachedStatementsOfPooledConnections() {
+        ConnectionPoolMetrics metrics = ConnectionPoolMetrics.of("movies/movieDatabase"); //<1>
+        moviesService.findMoviesByTitle("The Matrix", MovieFetchPlan.SUMMARY);
+        long acquisitions = metrics.getAcquisitions();
+        long hits = metrics.getStatementCacheHits();
+        int active = metrics.getActiveConnections();
+
+        for (int i = 0; i < 5; i++) {
+            moviesService.findMoviesByTitle("The Matrix", MovieFetchPlan.SUMMARY); //<2>
+        }
+
+        assertThat(metrics.getAcquisitions() - acquisitions, is(5L));
+        assertThat(metrics.getStatementCacheHits() - hits, is(5L)); //<3>
+        assertThat(metrics.getActiveConnections(), is(active)); //<4>
+    }
+    // end::pool[]
+
+    // tag::statistics[]
+    @Test
+    @UsingDataSet("datasets/multiple-movies.yml")
+    @ApplyScriptBefore("scripts/drop-referential-integrity.sql")
+    public void shouldExposeStatisticsOfNamedQueries() throws Exception {
+        long executions = executionsOf("Movie.findByTitle");
+
+        moviesService.findMoviesByTitle("The Matrix", MovieFetchPlan.SUMMARY);
+        moviesService.findMoviesByTitle("The Matrix Reloaded", MovieFetchPlan.SUMMARY);
+
+        QueryMetrics findByTitle = persistenceStatistics.getQueries().get("Movie.findByTitle"); //<1>
+        assertThat(findByTitle.getExecutionCount() - executions, is(2L));
+        assertThat(findByTitle.getQuery(), is("SELECT m FROM Movie m WHERE m.title = :title"));
+
+        Object flushes = ManagementFactory.getPlatformMBeanServer()
+            .getAttribute(PersistenceStatistics.objectName(), "FlushCount"); //<2>
+        assertThat(flushes, is((Object) persistenceStatistics.getFlushCount()));
+    }
+    // end::statistics[]
+
+    @Test
+    @UsingDataSet("datasets/multiple-movies.yml")
+    @ApplyScriptBefore("scripts/drop-referential-integrity.sql")
+    public void shouldRenderStatisticsAsJson() {
+        moviesService.serializeMoviesJoinFetch();
+
+        String json = PersistenceStatisticsServlet.toJson(persistenceStatistics);
+
+        assertThat(json, containsString("\"select m from Movie m "
+            + "left join fetch m.movieDetail left join fetch m.comments\":{"));
+        assertThat(json, containsString("\"entities\":{\"loads\":"));
+        assertThat(json, containsString("\"cacheHitRatios\":{\"secondLevel\":"));
+    }
+
+    private long executionsOf(String query) {
+        QueryMetrics metrics = persistenceStatistics.getQueries().get(query);
+        return metrics == null ? 0 : metrics.getExecutionCount();
+    }
+
+    // tag::slowquery[]
+    @Test
+    @UsingDataSet("datasets/multiple-movies.yml")
+    @ApplyScriptBefore("scripts/drop-referential-integrity.sql")
+    @Transactional(TransactionMode.DISABLED)
+    public void shouldLogStatementsSlowerThanThreshold() throws Exception {
+        SlowQueryLog slowQueryLog = SlowQueryLog.of("movies/movieDatabase");
+        BlockingQueue<SlowQuery> logged = new LinkedBlockingQueue<>();
+        Handler handler = new Handler() {
+            @Override
+            public void publish(LogRecord record) {
+                logged.add((SlowQuery) record.getParameters()[1]);
+            }
+
+            @Override
+            public void flush() {
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        SlowQueryLog.LOGGER.addHandler(handler);
+        slowQueryLog.setThresholdMillis(0); //<1>
+        slowQueryLog.setStackSampleRate(1);
+        try {
+            moviesService.findMoviesByTitle("The Matrix", MovieFetchPlan.SUMMARY);
+
+            SlowQuery query = nextQueryOf("MoviesService.findMoviesByTitle", logged); //<2>
+            assertThat(query.getSql(), containsString("where movie0_.title=?"));
+            assertThat(query.getParameterTypes(), is(Arrays.asList("String"))); //<3>
+            assertThat(query.getRows(), is(1L));
+            assertThat(query.getStack(), is(notNullValue()));
+        } finally {
+            slowQueryLog.setThresholdMillis(100);
+            slowQueryLog.setStackSampleRate(10);
+            SlowQueryLog.LOGGER.removeHandler(handler);
+        }
+    }
+    // end::slowquery[]
+
+    private SlowQuery nextQueryOf(String caller, BlockingQueue<SlowQuery> logged)
+            throws InterruptedException {
+        SlowQuery query;
+        do {
+            query = logged.poll(5, TimeUnit.SECONDS);
+            assertThat("No slow query logged by " + caller, query, is(notNullValue()));
+        } while (!query.getCaller().equals(caller));
+        return query;
+    }
 }